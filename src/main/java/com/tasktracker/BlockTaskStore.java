@@ -0,0 +1,452 @@
+package com.tasktracker;
+
+import org.json.JSONObject;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Reads and writes tasks in a compressed block layout.
+ * <p>
+ * Tasks are grouped into blocks of up to {@value #BLOCK_SIZE} tasks. Each block holds one JSON
+ * task per line and is compressed on its own with Deflate. A block index at the end of the file
+ * records, for each block, where it is stored, which statuses it contains and a Bloom filter of
+ * its task ids. Looking up a task by id or listing tasks with one status only decompresses the
+ * blocks that can contain a match.
+ * </p>
+ * <p>
+ * Blocks are written in runs of one status each, with tombstones in a run of their own, so
+ * that listing one status skips the blocks of all others. Each task line carries a {@code seq}
+ * field with the task's position in the written list, which {@link #readAll(Path)} uses to
+ * return the tasks in their original order. Files written before tasks carried a position are
+ * read in block order.
+ * </p>
+ * <p>
+ * File layout:
+ * <pre>
+ *   int     magic
+ *   byte[]  compressed blocks, one after another
+ *   index   per block: long offset, int compressedLength, int length, int taskCount,
+ *           byte statusMask, int bloomWords, long[bloomWords] bloom
+ *   int     blockCount
+ *   long    offset of the index
+ * </pre>
+ * The file is written to a temporary file and then moved into place, so readers never see a
+ * partially written store.
+ * </p>
+ */
+public final class BlockTaskStore {
+
+    /**
+     * File name suffix that selects the block layout in {@link TaskManager}.
+     */
+    public static final String FILE_SUFFIX = ".blocks";
+
+    private static final int MAGIC = 0x54544231; // "TTB1"
+    private static final int BLOCK_SIZE = 1024;
+    private static final int BLOOM_BITS_PER_TASK = 10;
+    private static final int BLOOM_HASHES = 3;
+    private static final int TRAILER_SIZE = Integer.BYTES + Long.BYTES;
+    private static final byte DELETED_MASK = (byte) (1 << 7);
+    private static final int DELETED_RUN = Status.values().length;
+    private static final AtomicLong BLOCKS_DECOMPRESSED = new AtomicLong();
+
+    private BlockTaskStore() {
+    }
+
+    /**
+     * Checks whether the given file uses the block layout.
+     *
+     * @param path The path of the tasks file.
+     * @return {@code true} if the file name ends with {@link #FILE_SUFFIX}.
+     */
+    public static boolean isBlockFile(Path path) {
+        return path.getFileName().toString().endsWith(FILE_SUFFIX);
+    }
+
+    /**
+     * Writes the tasks to the given file, replacing its contents.
+     *
+     * @param path  The path of the file to write.
+     * @param tasks The tasks to write, in order.
+     * @return The CRC-32 of the written file.
+     * @throws IOException if the file cannot be written.
+     */
+    public static long write(Path path, List<Task> tasks) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(parent, path.getFileName().toString(), ".tmp");
+        CRC32 checksum = new CRC32();
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new CheckedOutputStream(Files.newOutputStream(temp), checksum)))) {
+                out.writeInt(MAGIC);
+                long offset = Integer.BYTES;
+                List<BlockInfo> index = new ArrayList<>();
+                int[] runEnds = new int[DELETED_RUN + 1];
+                int[] order = orderByRun(tasks, runEnds);
+                Deflater deflater = new Deflater();
+                try {
+                    int start = 0;
+                    for (int runEnd : runEnds) {
+                        for (; start < runEnd; start += BLOCK_SIZE) {
+                            int end = Math.min(start + BLOCK_SIZE, runEnd);
+                            List<Task> block = new ArrayList<>(end - start);
+                            for (int i = start; i < end; i++) {
+                                block.add(tasks.get(order[i]));
+                            }
+                            byte[] raw = encodeBlock(block, order, start);
+                            byte[] compressed = deflate(deflater, raw);
+                            out.write(compressed);
+                            index.add(BlockInfo.of(block, offset, compressed.length, raw.length));
+                            offset += compressed.length;
+                        }
+                        start = runEnd;
+                    }
+                } finally {
+                    deflater.end();
+                }
+                for (BlockInfo block : index) {
+                    block.writeTo(out);
+                }
+                out.writeInt(index.size());
+                out.writeLong(offset);
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return checksum.getValue();
+    }
+
+    /**
+     * Reads all tasks from the given file.
+     *
+     * @param path The path of the file to read.
+     * @return The tasks, in the order they were written. Returns an empty list if the file is empty.
+     * @throws IOException if the file cannot be read or is not a valid block file.
+     */
+    public static List<Task> readAll(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            List<BlockInfo> index = readIndex(channel);
+            int total = 0;
+            for (BlockInfo block : index) {
+                total += block.taskCount;
+            }
+            Task[] tasks = new Task[total];
+            int read = 0;
+            for (BlockInfo block : index) {
+                int[] sequence = new int[block.taskCount];
+                List<Task> blockTasks = readBlock(channel, block, sequence);
+                for (int i = 0; i < blockTasks.size(); i++) {
+                    int position = sequence[i] < 0 ? read : sequence[i]; // Written before tasks carried a position
+                    if (position >= total || tasks[position] != null) {
+                        throw new IOException("Corrupt block at offset " + block.offset + ": bad task position " + position + ".");
+                    }
+                    tasks[position] = blockTasks.get(i);
+                    read++;
+                }
+            }
+            return new ArrayList<>(Arrays.asList(tasks));
+        }
+    }
+
+    /**
+     * Finds the task with the given ID, decompressing only the blocks whose Bloom filter matches.
+     * Tombstones are returned as well; callers decide whether to skip them.
+     *
+     * @param path The path of the file to read.
+     * @param id   The ID of the task to find.
+     * @return The task, or {@code null} if no task has the given ID.
+     * @throws IOException if the file cannot be read or is not a valid block file.
+     */
+    public static Task find(Path path, String id) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            for (BlockInfo block : readIndex(channel)) {
+                if (!block.mightContain(id)) {
+                    continue;
+                }
+                for (Task task : readBlock(channel, block, null)) {
+                    if (task.hasId(id)) {
+                        return task;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads the tasks that are not deleted and have the given status, decompressing only the
+     * blocks that contain such tasks.
+     *
+     * @param path   The path of the file to read.
+     * @param status The status to filter by.
+     * @return The matching tasks, in the order they were written.
+     * @throws IOException if the file cannot be read or is not a valid block file.
+     */
+    public static List<Task> readByStatus(Path path, Status status) throws IOException {
+        List<Task> tasks = new ArrayList<>();
+        byte mask = (byte) (1 << status.code());
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            for (BlockInfo block : readIndex(channel)) {
+                if ((block.statusMask & mask) == 0) {
+                    continue;
+                }
+                for (Task task : readBlock(channel, block, null)) {
+                    if (!task.isDeleted() && task.getStatusValue() == status) {
+                        tasks.add(task);
+                    }
+                }
+            }
+        }
+        return tasks;
+    }
+
+    /**
+     * Counts the blocks decompressed by all reads so far, so tests can check that a read only
+     * decompresses the blocks it needs.
+     *
+     * @return The number of blocks decompressed since the class was loaded.
+     */
+    static long blocksDecompressed() {
+        return BLOCKS_DECOMPRESSED.get();
+    }
+
+    /**
+     * Orders the tasks by run: one run per status in code order, then tombstones. Tasks keep
+     * their relative order within a run.
+     *
+     * @param tasks   The tasks, in order.
+     * @param runEnds Receives the end of each run in the returned order.
+     * @return The positions of the tasks in the given list, in run order.
+     */
+    private static int[] orderByRun(List<Task> tasks, int[] runEnds) {
+        int[] runs = new int[tasks.size()];
+        for (int i = 0; i < runs.length; i++) {
+            Task task = tasks.get(i);
+            runs[i] = task.isDeleted() ? DELETED_RUN : task.getStatusValue().code();
+            runEnds[runs[i]]++;
+        }
+        int[] next = new int[runEnds.length];
+        for (int run = 1; run < runEnds.length; run++) {
+            runEnds[run] += runEnds[run - 1];
+            next[run] = runEnds[run - 1];
+        }
+        int[] order = new int[runs.length];
+        for (int i = 0; i < runs.length; i++) {
+            order[next[runs[i]]++] = i;
+        }
+        return order;
+    }
+
+    /**
+     * Encodes a block as one JSON task per line, each with its position in the written list.
+     *
+     * @param block The tasks of the block.
+     * @param order The positions of all tasks in run order.
+     * @param start The index in {@code order} of the first task of the block.
+     */
+    private static byte[] encodeBlock(List<Task> block, int[] order, int start) {
+        StringBuilder lines = new StringBuilder();
+        for (int i = 0; i < block.size(); i++) {
+            lines.append(TaskManager.toJson(block.get(i)).put("seq", order[start + i])).append('\n');
+        }
+        return lines.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] deflate(Deflater deflater, byte[] raw) {
+        deflater.reset();
+        deflater.setInput(raw);
+        deflater.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 4 + 64);
+        byte[] buffer = new byte[8192];
+        while (!deflater.finished()) {
+            int length = deflater.deflate(buffer);
+            out.write(buffer, 0, length);
+        }
+        return out.toByteArray();
+    }
+
+    private static List<BlockInfo> readIndex(FileChannel channel) throws IOException {
+        long size = channel.size();
+        List<BlockInfo> index = new ArrayList<>();
+        if (size == 0) {
+            return index; // Freshly created, empty file
+        }
+        if (size < Integer.BYTES + TRAILER_SIZE || readFully(channel, 0, Integer.BYTES).getInt() != MAGIC) {
+            throw new IOException("Not a block tasks file.");
+        }
+        ByteBuffer trailer = readFully(channel, size - TRAILER_SIZE, TRAILER_SIZE);
+        int blockCount = trailer.getInt();
+        long indexOffset = trailer.getLong();
+        if (blockCount < 0 || indexOffset < Integer.BYTES || indexOffset > size - TRAILER_SIZE) {
+            throw new IOException("Corrupt block index.");
+        }
+        ByteBuffer buffer = readFully(channel, indexOffset, (int) (size - TRAILER_SIZE - indexOffset));
+        for (int i = 0; i < blockCount; i++) {
+            index.add(BlockInfo.readFrom(buffer));
+        }
+        return index;
+    }
+
+    /**
+     * Decompresses and parses a block.
+     *
+     * @param channel  The file.
+     * @param block    The index entry of the block.
+     * @param sequence Receives the position of each task in the written list, or -1 if the
+     *                 file predates positions; may be {@code null} if they are not needed.
+     * @return The tasks of the block, in block order.
+     * @throws IOException if the block cannot be read or is corrupt.
+     */
+    private static List<Task> readBlock(FileChannel channel, BlockInfo block, int[] sequence) throws IOException {
+        BLOCKS_DECOMPRESSED.incrementAndGet();
+        ByteBuffer compressed = readFully(channel, block.offset, block.compressedLength);
+        byte[] raw = new byte[block.length];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed.array(), 0, block.compressedLength);
+            int read = 0;
+            while (read < raw.length && !inflater.finished()) {
+                int n = inflater.inflate(raw, read, raw.length - read);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                read += n;
+            }
+            if (read != raw.length) {
+                throw new IOException("Corrupt block at offset " + block.offset + ".");
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt block at offset " + block.offset + ": " + e.getMessage(), e);
+        } finally {
+            inflater.end();
+        }
+
+        List<Task> tasks = new ArrayList<>(block.taskCount);
+        String content = new String(raw, StandardCharsets.UTF_8);
+        int start = 0;
+        for (int end = content.indexOf('\n'); end >= 0; end = content.indexOf('\n', start)) {
+            if (tasks.size() == block.taskCount) {
+                throw new IOException("Corrupt block at offset " + block.offset + ": too many tasks.");
+            }
+            JSONObject json = new JSONObject(content.substring(start, end));
+            if (sequence != null) {
+                sequence[tasks.size()] = json.optInt("seq", -1);
+            }
+            tasks.add(TaskManager.fromJson(json));
+            start = end + 1;
+        }
+        if (tasks.size() != block.taskCount) {
+            throw new IOException("Corrupt block at offset " + block.offset + ": too few tasks.");
+        }
+        return tasks;
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of block tasks file.");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static int bloomIndex(String id, int hash, int bits) {
+        int h1 = id.hashCode();
+        int h2 = Integer.rotateLeft(h1 * 0x9E3779B9, 16) | 1;
+        return Math.floorMod(h1 + hash * h2, bits);
+    }
+
+    /**
+     * The index entry of one block.
+     */
+    private static final class BlockInfo {
+        private final long offset;
+        private final int compressedLength;
+        private final int length;
+        private final int taskCount;
+        private final byte statusMask;
+        private final long[] bloom;
+
+        private BlockInfo(long offset, int compressedLength, int length, int taskCount, byte statusMask, long[] bloom) {
+            this.offset = offset;
+            this.compressedLength = compressedLength;
+            this.length = length;
+            this.taskCount = taskCount;
+            this.statusMask = statusMask;
+            this.bloom = bloom;
+        }
+
+        static BlockInfo of(List<Task> block, long offset, int compressedLength, int length) {
+            long[] bloom = new long[Math.max(1, (block.size() * BLOOM_BITS_PER_TASK + Long.SIZE - 1) / Long.SIZE)];
+            int bits = bloom.length * Long.SIZE;
+            byte statusMask = 0;
+            for (Task task : block) {
+                statusMask |= task.isDeleted() ? DELETED_MASK : (byte) (1 << task.getStatusValue().code());
+                String id = task.getId();
+                for (int hash = 0; hash < BLOOM_HASHES; hash++) {
+                    int bit = bloomIndex(id, hash, bits);
+                    bloom[bit / Long.SIZE] |= 1L << (bit % Long.SIZE);
+                }
+            }
+            return new BlockInfo(offset, compressedLength, length, block.size(), statusMask, bloom);
+        }
+
+        static BlockInfo readFrom(ByteBuffer buffer) {
+            long offset = buffer.getLong();
+            int compressedLength = buffer.getInt();
+            int length = buffer.getInt();
+            int taskCount = buffer.getInt();
+            byte statusMask = buffer.get();
+            long[] bloom = new long[buffer.getInt()];
+            for (int i = 0; i < bloom.length; i++) {
+                bloom[i] = buffer.getLong();
+            }
+            return new BlockInfo(offset, compressedLength, length, taskCount, statusMask, bloom);
+        }
+
+        void writeTo(DataOutputStream out) throws IOException {
+            out.writeLong(offset);
+            out.writeInt(compressedLength);
+            out.writeInt(length);
+            out.writeInt(taskCount);
+            out.writeByte(statusMask);
+            out.writeInt(bloom.length);
+            for (long word : bloom) {
+                out.writeLong(word);
+            }
+        }
+
+        boolean mightContain(String id) {
+            int bits = bloom.length * Long.SIZE;
+            for (int hash = 0; hash < BLOOM_HASHES; hash++) {
+                int bit = bloomIndex(id, hash, bits);
+                if ((bloom[bit / Long.SIZE] & (1L << (bit % Long.SIZE))) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package com.tasktracker;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tracks which tasks are blocked by others and which are ready to be worked on.
+ * <p>
+ * A task is blocked by the tasks it depends on and by its own subtasks. A blocker is resolved
+ * when it is {@code DONE}, deleted or no longer in the store. A task is ready when it is not
+ * {@code DONE} and all of its blockers are resolved.
+ * </p>
+ * <p>
+ * The graph keeps a reverse index from each blocker to the tasks it blocks, and a count of
+ * unresolved blockers per task. When a task changes, only the tasks it directly blocks are
+ * updated, so maintaining the ready set costs time proportional to the change rather than to
+ * the size of the graph. The graph is built from, and must be kept in step with, one list of
+ * tasks owned by {@link TaskManager}.
+ * </p>
+ */
+final class DependencyGraph {
+
+    private final List<Task> source;
+    private final Map<String, Task> tasks = new HashMap<>();
+    private final Map<String, List<String>> dependents = new HashMap<>();
+    private final Map<String, List<String>> children = new HashMap<>();
+    private final Map<String, Integer> pending = new HashMap<>();
+    private final Set<String> ready = new LinkedHashSet<>();
+
+    /**
+     * Builds the graph for the given tasks.
+     *
+     * @param source The tasks, including tombstones, which are ignored.
+     */
+    DependencyGraph(List<Task> source) {
+        this.source = source;
+        for (Task task : source) {
+            if (!task.isDeleted()) {
+                tasks.put(task.getId(), task);
+            }
+        }
+        for (Task task : tasks.values()) {
+            addEdges(task);
+        }
+        for (Task task : tasks.values()) {
+            int count = 0;
+            for (String blocker : blockers(task.getId())) {
+                if (!isResolved(blocker)) {
+                    count++;
+                }
+            }
+            pending.put(task.getId(), count);
+            refresh(task.getId());
+        }
+    }
+
+    /**
+     * @param tasks A list of tasks.
+     * @return {@code true} if this graph was built from, and is maintained for, that exact list.
+     */
+    boolean isBuiltFrom(List<Task> tasks) {
+        return source == tasks;
+    }
+
+    /**
+     * @return The tasks that are ready, in no particular order.
+     */
+    List<Task> readyTasks() {
+        List<Task> result = new ArrayList<>(ready.size());
+        for (String id : ready) {
+            result.add(tasks.get(id));
+        }
+        return result;
+    }
+
+    /**
+     * @return The IDs of the tasks that are ready, in no particular order.
+     */
+    List<String> readyIds() {
+        return new ArrayList<>(ready);
+    }
+
+    /**
+     * Updates the graph for a newly added task.
+     *
+     * @param task The added task.
+     */
+    void taskAdded(Task task) {
+        String id = task.getId();
+        tasks.put(id, task);
+        addEdges(task);
+        int count = 0;
+        for (String blocker : blockers(id)) {
+            if (!isResolved(blocker)) {
+                count++;
+            }
+        }
+        pending.put(id, count);
+        refresh(id);
+        if (task.getStatusValue() != Status.DONE && task.getParentId() != null) {
+            adjust(task.getParentId(), 1);
+        }
+    }
+
+    /**
+     * Updates the graph after the status of a task changed.
+     *
+     * @param task      The task, with its new status.
+     * @param oldStatus The status before the change.
+     */
+    void statusChanged(Task task, Status oldStatus) {
+        boolean wasDone = oldStatus == Status.DONE;
+        boolean isDone = task.getStatusValue() == Status.DONE;
+        refresh(task.getId());
+        if (wasDone != isDone) {
+            adjustDependents(task.getId(), isDone ? -1 : 1);
+        }
+    }
+
+    /**
+     * Updates the graph after a task was deleted. Its dependents no longer wait for it.
+     *
+     * @param task The deleted task.
+     */
+    void taskDeleted(Task task) {
+        String id = task.getId();
+        if (task.getStatusValue() != Status.DONE) {
+            adjustDependents(id, -1);
+        }
+        for (String dependency : task.getDependsOn()) {
+            remove(dependents, dependency, id);
+        }
+        if (task.getParentId() != null) {
+            remove(children, task.getParentId(), id);
+            remove(dependents, id, task.getParentId());
+        }
+        tasks.remove(id);
+        pending.remove(id);
+        ready.remove(id);
+    }
+
+    /**
+     * Updates the graph after a task gained a dependency.
+     *
+     * @param task    The dependent task.
+     * @param blocker The ID of the task it now depends on.
+     */
+    void dependencyAdded(Task task, String blocker) {
+        dependents.computeIfAbsent(blocker, key -> new ArrayList<>()).add(task.getId());
+        if (!isResolved(blocker)) {
+            adjust(task.getId(), 1);
+        }
+    }
+
+    /**
+     * Updates the graph after a task lost a dependency.
+     *
+     * @param task    The dependent task.
+     * @param blocker The ID of the task it no longer depends on.
+     */
+    void dependencyRemoved(Task task, String blocker) {
+        remove(dependents, blocker, task.getId());
+        if (!isResolved(blocker)) {
+            adjust(task.getId(), -1);
+        }
+    }
+
+    /**
+     * Checks whether making a task depend on another would create a cycle, i.e. whether the
+     * task already blocks the other one, directly or indirectly.
+     *
+     * @param id      The ID of the task that would get the dependency.
+     * @param blocker The ID of the task it would depend on.
+     * @return {@code true} if the dependency would create a cycle.
+     */
+    boolean wouldCreateCycle(String id, String blocker) {
+        Set<String> visited = new HashSet<>();
+        Deque<String> stack = new ArrayDeque<>();
+        stack.push(blocker);
+        while (!stack.isEmpty()) {
+            String current = stack.pop();
+            if (current.equals(id)) {
+                return true;
+            }
+            if (visited.add(current)) {
+                for (String next : blockers(current)) {
+                    stack.push(next);
+                }
+            }
+        }
+        return false;
+    }
+
+    private void addEdges(Task task) {
+        String id = task.getId();
+        for (String dependency : task.getDependsOn()) {
+            dependents.computeIfAbsent(dependency, key -> new ArrayList<>()).add(id);
+        }
+        if (task.getParentId() != null) {
+            children.computeIfAbsent(task.getParentId(), key -> new ArrayList<>()).add(id);
+            dependents.computeIfAbsent(id, key -> new ArrayList<>()).add(task.getParentId());
+        }
+    }
+
+    /**
+     * @param id The ID of a task.
+     * @return The IDs of the tasks that block it: its dependencies and its subtasks.
+     */
+    private List<String> blockers(String id) {
+        List<String> result = new ArrayList<>();
+        Task task = tasks.get(id);
+        if (task != null) {
+            result.addAll(List.of(task.getDependsOn()));
+        }
+        result.addAll(children.getOrDefault(id, List.of()));
+        return result;
+    }
+
+    private boolean isResolved(String id) {
+        Task task = tasks.get(id);
+        return task == null || task.getStatusValue() == Status.DONE;
+    }
+
+    private void adjustDependents(String id, int delta) {
+        for (String dependent : dependents.getOrDefault(id, List.of())) {
+            adjust(dependent, delta);
+        }
+    }
+
+    private void adjust(String id, int delta) {
+        if (!tasks.containsKey(id)) {
+            return;
+        }
+        pending.merge(id, delta, Integer::sum);
+        refresh(id);
+    }
+
+    private void refresh(String id) {
+        Task task = tasks.get(id);
+        if (task != null && task.getStatusValue() != Status.DONE && pending.getOrDefault(id, 0) == 0) {
+            ready.add(id);
+        } else {
+            ready.remove(id);
+        }
+    }
+
+    private static void remove(Map<String, List<String>> index, String key, String value) {
+        List<String> values = index.get(key);
+        if (values != null) {
+            values.remove(value);
+            if (values.isEmpty()) {
+                index.remove(key);
+            }
+        }
+    }
+}
@@ -18,6 +18,34 @@ public enum Status {
     IN_PROGRESS,
     DONE;
 
+    /**
+     * Cached copy of {@link #values()} so that decoding a status code does not allocate a new array.
+     */
+    private static final Status[] VALUES = values();
+
+    /**
+     * Returns the compact byte code for this status, as stored by {@link Task}.
+     *
+     * @return the byte code of this status
+     */
+    public byte code() {
+        return (byte) ordinal();
+    }
+
+    /**
+     * Converts a byte code produced by {@link #code()} back to a {@code Status} enum.
+     *
+     * @param code the byte code of the status
+     * @return the corresponding {@code Status} enum value
+     * @throws IllegalArgumentException if the code does not map to a status
+     */
+    public static Status fromCode(byte code) {
+        if (code < 0 || code >= VALUES.length) {
+            throw new IllegalArgumentException("Invalid status code: " + code);
+        }
+        return VALUES[code];
+    }
+
     /**
      * Validates and converts a string to a {@code Status} enum.
      *
@@ -1,8 +1,13 @@
 package com.tasktracker;
 
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.time.Clock;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
-import java.util.UUID;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
 
 /**
  * Represents a task in the task manager CLI.
@@ -15,14 +20,53 @@ import java.util.UUID;
  *   <li>{@code createdAt}: The timestamp when the task was created.</li>
  *   <li>{@code updatedAt}: The timestamp when the task was last updated.</li>
  * </ul>
+ * <p>
+ * A task can optionally belong to a parent task and depend on other tasks. A task is blocked
+ * until its dependencies and its subtasks are {@code DONE}; see {@link TaskManager#listReadyTasks()}.
+ * </p>
+ * <p>
+ * A deleted task is kept as a tombstone until the store is compacted; see {@link #isDeleted()}.
+ * </p>
+ * <p>
+ * To keep large task sets small on the heap, the fields are stored in a compact form and
+ * converted back on access: the hex id is packed into a {@code long}, the description is kept
+ * as UTF-8 bytes, the status as its {@link Status#code() byte code} and both timestamps as
+ * epoch seconds. Ids that are not 8 or 16 lowercase hex characters (e.g. from a hand-edited
+ * file) are kept as plain strings.
+ * </p>
+ * <p>
+ * New tasks get 16-character ids: 64 random bits, so a store of 10M tasks has a chance of
+ * about 1 in 370,000 of holding two equal ids. The 8-character ids of earlier versions, with
+ * only 32 random bits, are expected to collide after about 77,000 tasks and over 11,000 times
+ * among 10M tasks; they are still read and kept as they are.
+ * </p>
+ * <p>
+ * Measured with the scale tests, a task with a typical 47-byte description retains about
+ * 126 bytes of heap including its list slot, i.e. about 1.2 GB for 10M tasks. The description
+ * bytes are the largest part; a shared description arena would only save the 16-byte array
+ * header per task.
+ * </p>
  */
 
 public class Task {
-    private final String id;
-    private String description;
-    private Status status;
-    private final String createdAt;
-    private String updatedAt;
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private static final int SHORT_ID_LENGTH = 8;
+    private static final int LONG_ID_LENGTH = 16;
+    private static final SecureRandom ID_RANDOM = new SecureRandom();
+    private static volatile Clock clock = Clock.systemDefaultZone();
+    private static final String[] NO_DEPENDENCIES = new String[0];
+
+    private final long packedId;
+    private final byte idLength;
+    private final String rawId;
+    private byte[] description;
+    private byte status;
+    private boolean deleted;
+    private String parentId;
+    private String[] dependsOn = NO_DEPENDENCIES;
+    private final long createdAt;
+    private long updatedAt;
 
     /**
      * Constructs a new Task with the given description.
@@ -36,9 +80,11 @@ public class Task {
         if (description == null || description.trim().isEmpty()) {
             throw new IllegalArgumentException("Description cannot be null or empty.");
         }
-        this.id = generateID();
-        this.description = description;
-        this.status = Status.TODO;
+        this.packedId = generateID();
+        this.idLength = LONG_ID_LENGTH;
+        this.rawId = null;
+        this.description = encode(description);
+        this.status = Status.TODO.code();
         this.createdAt = getCurrentTime();
         this.updatedAt = this.createdAt;
     }
@@ -57,9 +103,11 @@ public class Task {
         if (description == null || description.trim().isEmpty()) {
             throw new IllegalArgumentException("Description cannot be null or empty.");
         }
-        this.id = generateID();
-        this.description = description;
-        this.status = Status.validateStatus(status);
+        this.packedId = generateID();
+        this.idLength = LONG_ID_LENGTH;
+        this.rawId = null;
+        this.description = encode(description);
+        this.status = Status.validateStatus(status).code();
         this.createdAt = getCurrentTime();
         this.updatedAt = this.createdAt;
     }
@@ -73,28 +121,135 @@ public class Task {
      * @param status      The status of the task. Must be a valid status string (e.g., "TODO", "IN_PROGRESS", "DONE").
      * @param createdAt   The timestamp when the task was created, in the format "yyyy-MM-dd HH:mm:ss".
      * @param updatedAt   The timestamp when the task was last updated, in the format "yyyy-MM-dd HH:mm:ss".
-     * @throws IllegalArgumentException if the description is null or empty, or if the status is invalid.
+     * @throws IllegalArgumentException if the description is null or empty, if the status is invalid,
+     *                                  or if a timestamp is not in the expected format.
      * @see Status#validateStatus(String)
      */
     public Task(String id, String description, String status, String createdAt, String updatedAt) throws IllegalArgumentException {
+        this(id, description, status, createdAt, updatedAt, false);
+    }
+
+    /**
+     * Constructs a Task from persistent storage, including whether it is a tombstone.
+     *
+     * @param id          The unique identifier for the task.
+     * @param description A short description of the task. Should not be null or empty.
+     * @param status      The status of the task. Must be a valid status string (e.g., "TODO", "IN_PROGRESS", "DONE").
+     * @param createdAt   The timestamp when the task was created, in the format "yyyy-MM-dd HH:mm:ss".
+     * @param updatedAt   The timestamp when the task was last updated, in the format "yyyy-MM-dd HH:mm:ss".
+     * @param deleted     Whether the task has been deleted.
+     * @throws IllegalArgumentException if the description is null or empty, if the status is invalid,
+     *                                  or if a timestamp is not in the expected format.
+     */
+    Task(String id, String description, String status, String createdAt, String updatedAt, boolean deleted) {
         if (description == null || description.trim().isEmpty()) {
             throw new IllegalArgumentException("Description cannot be null or empty.");
         }
-        this.id = id;
-        this.description = description;
-        this.status = Status.validateStatus(status);
-        this.createdAt = createdAt;
-        this.updatedAt = updatedAt;
+        boolean packable = isPackableId(id);
+        this.packedId = packable ? Long.parseUnsignedLong(id, 16) : 0;
+        this.idLength = packable ? (byte) id.length() : 0;
+        this.rawId = packable ? null : id;
+        this.description = encode(description);
+        this.status = Status.validateStatus(status).code();
+        this.deleted = deleted;
+        this.createdAt = parseTime(createdAt);
+        this.updatedAt = parseTime(updatedAt);
+    }
+
+    /**
+     * Constructs a copy of the given task. Later changes to either task do not affect the other.
+     *
+     * @param other The task to copy.
+     */
+    Task(Task other) {
+        this.packedId = other.packedId;
+        this.idLength = other.idLength;
+        this.rawId = other.rawId;
+        this.description = other.description; // Replaced, never modified in place.
+        this.status = other.status;
+        this.deleted = other.deleted;
+        this.parentId = other.parentId;
+        this.dependsOn = other.dependsOn; // Replaced, never modified in place.
+        this.createdAt = other.createdAt;
+        this.updatedAt = other.updatedAt;
+    }
+
+    /**
+     * Gets the current time as epoch seconds of the local wall-clock time.
+     *
+     * @return The current timestamp in epoch seconds.
+     * @see #setClock(Clock)
+     */
+    static long getCurrentTime() {
+        return LocalDateTime.now(clock).toEpochSecond(ZoneOffset.UTC);
+    }
+
+    /**
+     * Sets the clock that timestamps tasks, history events and checkpoints, and that decides
+     * which tasks are old enough to archive. Lets tests create a history at chosen times.
+     *
+     * @param newClock The clock, or {@code null} for the system clock in the default time zone.
+     */
+    static void setClock(Clock newClock) {
+        clock = newClock == null ? Clock.systemDefaultZone() : newClock;
+    }
+
+    /**
+     * Parses a timestamp in the format "yyyy-MM-dd HH:mm:ss" into epoch seconds.
+     *
+     * @param timestamp The timestamp to parse.
+     * @return The timestamp in epoch seconds.
+     * @throws IllegalArgumentException if the timestamp is null or not in the expected format.
+     */
+    static long parseTime(String timestamp) {
+        if (timestamp == null) {
+            throw new IllegalArgumentException("Timestamp cannot be null.");
+        }
+        try {
+            return LocalDateTime.parse(timestamp, TIMESTAMP_FORMAT).toEpochSecond(ZoneOffset.UTC);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid timestamp: " + timestamp + ". Expected format is yyyy-MM-dd HH:mm:ss");
+        }
+    }
+
+    /**
+     * Formats epoch seconds as a timestamp in the format "yyyy-MM-dd HH:mm:ss".
+     *
+     * @param epochSeconds The timestamp in epoch seconds.
+     * @return The formatted timestamp.
+     */
+    static String formatTime(long epochSeconds) {
+        return LocalDateTime.ofEpochSecond(epochSeconds, 0, ZoneOffset.UTC).format(TIMESTAMP_FORMAT);
+    }
+
+    /**
+     * Checks whether an id can be packed into a {@code long} without loss: it must be 8 or 16
+     * lowercase hex characters.
+     *
+     * @param id The id to check.
+     * @return {@code true} if the id can be packed.
+     */
+    private static boolean isPackableId(String id) {
+        if (id == null || (id.length() != SHORT_ID_LENGTH && id.length() != LONG_ID_LENGTH)) {
+            return false;
+        }
+        for (int i = 0; i < id.length(); i++) {
+            char c = id.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
-     * Gets the current timestamp in the format "yyyy-MM-dd HH:mm:ss".
+     * Encodes a description as UTF-8 bytes.
      *
-     * @return The current timestamp as a string.
+     * @param text The text to encode.
+     * @return The UTF-8 bytes of the text.
      */
-    private static String getCurrentTime() {
-        DateTimeFormatter dateFormat = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-        return LocalDateTime.now().format(dateFormat);
+    private static byte[] encode(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
     }
 
     /**
@@ -103,7 +258,29 @@ public class Task {
      * @return The task ID.
      */
     public String getId() {
-        return id;
+        if (rawId != null) {
+            return rawId;
+        }
+        char[] chars = new char[idLength];
+        long packed = packedId;
+        for (int i = idLength - 1; i >= 0; i--) {
+            chars[i] = HEX_DIGITS[(int) (packed & 0xF)];
+            packed >>>= 4;
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Checks whether this task has the given ID without materializing its own ID as a string.
+     *
+     * @param id The ID to compare against.
+     * @return {@code true} if the task has the given ID.
+     */
+    public boolean hasId(String id) {
+        if (rawId != null) {
+            return rawId.equals(id);
+        }
+        return id != null && id.length() == idLength && isPackableId(id) && Long.parseUnsignedLong(id, 16) == packedId;
     }
 
     /**
@@ -112,7 +289,7 @@ public class Task {
      * @return The task description.
      */
     public String getDescription() {
-        return description;
+        return new String(description, StandardCharsets.UTF_8);
     }
 
     /**
@@ -126,7 +303,7 @@ public class Task {
         if (description == null || description.trim().isEmpty()) {
             throw new IllegalArgumentException("Description cannot be null or empty.");
         }
-        this.description = description;
+        this.description = encode(description);
         this.updatedAt = getCurrentTime();
     }
 
@@ -136,7 +313,16 @@ public class Task {
      * @return The task status as a string (e.g., "TODO", "IN_PROGRESS", "DONE").
      */
     public String getStatus() {
-        return status.toString();
+        return Status.fromCode(status).toString();
+    }
+
+    /**
+     * Gets the status of the task as a {@link Status} enum.
+     *
+     * @return The task status.
+     */
+    public Status getStatusValue() {
+        return Status.fromCode(status);
     }
 
     /**
@@ -149,7 +335,110 @@ public class Task {
      * @see Status#validateStatus(String)
      */
     public void setStatus(String status) throws IllegalArgumentException {
-        this.status = Status.validateStatus(status);
+        this.status = Status.validateStatus(status).code();
+        this.updatedAt = getCurrentTime();
+    }
+
+    /**
+     * Gets the ID of the parent task.
+     *
+     * @return The parent task ID, or {@code null} if the task has no parent.
+     */
+    public String getParentId() {
+        return parentId;
+    }
+
+    /**
+     * Sets the parent task. The parent is blocked until all of its subtasks are done.
+     * Does not change the {@code updatedAt} timestamp.
+     *
+     * @param parentId The ID of the parent task, or {@code null} for no parent.
+     * @throws IllegalArgumentException if the parent ID is empty or is the task's own ID.
+     */
+    public void setParentId(String parentId) {
+        if (parentId != null && (parentId.trim().isEmpty() || hasId(parentId))) {
+            throw new IllegalArgumentException("Invalid parent task ID: " + parentId);
+        }
+        this.parentId = parentId;
+    }
+
+    /**
+     * Gets the IDs of the tasks this task depends on.
+     *
+     * @return A copy of the dependency IDs, in the order they were added.
+     */
+    public String[] getDependsOn() {
+        return dependsOn.clone();
+    }
+
+    /**
+     * Checks whether this task directly depends on the given task.
+     *
+     * @param id The ID of the other task.
+     * @return {@code true} if the task depends on it.
+     */
+    public boolean dependsOn(String id) {
+        for (String dependency : dependsOn) {
+            if (dependency.equals(id)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adds a dependency on another task. The caller is responsible for rejecting cycles.
+     *
+     * @param id The ID of the task to depend on.
+     * @return {@code true} if the dependency was added, {@code false} if it already existed.
+     */
+    boolean addDependency(String id) {
+        if (dependsOn(id)) {
+            return false;
+        }
+        String[] updated = Arrays.copyOf(dependsOn, dependsOn.length + 1);
+        updated[dependsOn.length] = id;
+        dependsOn = updated;
+        return true;
+    }
+
+    /**
+     * Removes a dependency on another task.
+     *
+     * @param id The ID of the task to no longer depend on.
+     * @return {@code true} if the dependency was removed, {@code false} if it didn't exist.
+     */
+    boolean removeDependency(String id) {
+        for (int i = 0; i < dependsOn.length; i++) {
+            if (dependsOn[i].equals(id)) {
+                String[] updated = new String[dependsOn.length - 1];
+                System.arraycopy(dependsOn, 0, updated, 0, i);
+                System.arraycopy(dependsOn, i + 1, updated, i, dependsOn.length - i - 1);
+                dependsOn = updated.length == 0 ? NO_DEPENDENCIES : updated;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether the task has been deleted.
+     * A deleted task stays in the task store as a tombstone until the store is compacted.
+     *
+     * @return {@code true} if the task has been deleted.
+     */
+    public boolean isDeleted() {
+        return deleted;
+    }
+
+    /**
+     * Marks the task as deleted or restores a deleted task.
+     * The {@code updatedAt} timestamp is updated to the current time.
+     *
+     * @param deleted {@code true} to turn the task into a tombstone, {@code false} to restore it.
+     */
+    void setDeleted(boolean deleted) {
+        this.deleted = deleted;
         this.updatedAt = getCurrentTime();
     }
 
@@ -159,6 +448,15 @@ public class Task {
      * @return The timestamp when the task was created, in the format "yyyy-MM-dd HH:mm:ss".
      */
     public String getCreatedAt() {
+        return formatTime(createdAt);
+    }
+
+    /**
+     * Gets the creation timestamp of the task as epoch seconds of the local wall-clock time.
+     *
+     * @return The creation timestamp in epoch seconds.
+     */
+    public long getCreatedAtEpoch() {
         return createdAt;
     }
 
@@ -168,6 +466,15 @@ public class Task {
      * @return The timestamp when the task was last updated, in the format "yyyy-MM-dd HH:mm:ss".
      */
     public String getUpdatedAt() {
+        return formatTime(updatedAt);
+    }
+
+    /**
+     * Gets the last update timestamp of the task as epoch seconds of the local wall-clock time.
+     *
+     * @return The last update timestamp in epoch seconds.
+     */
+    public long getUpdatedAtEpoch() {
         return updatedAt;
     }
 
@@ -175,17 +482,15 @@ public class Task {
      * Generates a unique ID for the task.
      *
      * <p>
-     *  This method uses {@link UUID#randomUUID()} to generate a random UUID and then extracts the first 8 characters.
-     *  While the possibility of collision is low, it is not guaranteed to be perfectly unique in all cases.
+     *  This method draws 64 random bits from a {@link SecureRandom}; the ID is their 16-character
+     *  hex form. While the possibility of collision is very low, it is not guaranteed to be
+     *  perfectly unique in all cases.
      * </p>
      *
-     * @return A unique identifier for the task.
+     * @return A unique identifier for the task, packed into a {@code long}.
      */
-    private static String generateID() {
-        //maintain a json file for just hashes
-        // or maybe build one during runtime
-        // without it too though the chance of a collision is very low
-        return UUID.randomUUID().toString().substring(0, 8);
+    static long generateID() {
+        return ID_RANDOM.nextLong();
     }
 
     /**
@@ -197,11 +502,14 @@ public class Task {
     @Override
     public String toString() {
         return "Task{" +
-                "id='" + id + '\'' +
-                ", description='" + description + '\'' +
-                ", status='" + status + '\'' +
-                ", createdAt=" + createdAt +
-                ", updatedAt=" + updatedAt +
+                "id='" + getId() + '\'' +
+                ", description='" + getDescription() + '\'' +
+                ", status='" + getStatus() + '\'' +
+                ", createdAt=" + getCreatedAt() +
+                ", updatedAt=" + getUpdatedAt() +
+                (parentId != null ? ", parentId=" + parentId : "") +
+                (dependsOn.length > 0 ? ", dependsOn=" + Arrays.toString(dependsOn) : "") +
+                (deleted ? ", deleted=true" : "") +
                 '}';
     }
 }
@@ -1,9 +1,13 @@
 package com.tasktracker;
 
-import org.apache.commons.text.similarity.LevenshteinDistance;
 import picocli.CommandLine;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.*;
+import java.util.stream.Stream;
 
 import picocli.CommandLine.*;
 
@@ -48,20 +52,26 @@ public class TaskCLI implements Runnable {
      *
      * @param description The description of the task.
      * @param status      The status of the task. If null, defaults to TODO.
+     * @param parentId    The ID of the parent task, if the task is a subtask (optional).
      */
     @Command(name = "add", description = "Add a new task")
     private void addCommand(
             @Parameters(paramLabel = "DESCRIPTION", description = "The description of the task") String description,
-            @Option(names = {"-s", "--status"}, description = "The status for the task") String status
+            @Option(names = {"-s", "--status"}, description = "The status for the task") String status,
+            @Option(names = {"-p", "--parent"}, description = "ID of the parent task") String parentId
     ) {
         if (status == null) {
             try {
-                addTask(description);
+                addTask(description, null, parentId);
             }catch (IllegalArgumentException e) {
                 System.out.println(e.getMessage());
             }
         } else {
-            addTask(description, status);
+            try {
+                addTask(description, status, parentId);
+            } catch (IllegalArgumentException e) {
+                System.out.println(e.getMessage());
+            }
         }
     }
 
@@ -118,17 +128,40 @@ public class TaskCLI implements Runnable {
     /**
      * Command to list tasks.
      *
-     * @param statusFilter Optional filter to list tasks by status.
+     * @param statusFilter    Optional filter to list tasks by status.
+     * @param includeArchived Whether to also list archived tasks.
+     * @param asOf            Optional point in time to list the tasks as they were then.
+     * @param ready           Whether to list only the tasks that are ready to be worked on. Can be
+     *                        combined with the status filter, but not with the other options.
      */
     @Command(name = "list", description = "List tasks")
     private void listCommand(
-            @Option(names = {"-s", "--status"}, description = "status filter") String statusFilter
+            @Option(names = {"-s", "--status"}, description = "status filter") String statusFilter,
+            @Option(names = {"--include-archived"}, description = "include archived tasks") boolean includeArchived,
+            @Option(names = {"--as-of"}, description = "list tasks as they were at this time (yyyy-MM-dd HH:mm:ss)") String asOf,
+            @Option(names = {"--ready"}, description = "list only tasks whose dependencies and subtasks are done") boolean ready
     ) {
-        if (statusFilter == null) {
-            listTasks();
+        if (ready) {
+            if (includeArchived || asOf != null) {
+                System.out.println("--ready cannot be combined with --include-archived or --as-of.");
+                return;
+            }
+            try {
+                listReadyTasks(statusFilter);
+            } catch (IllegalArgumentException e) {
+                System.out.println(e.getMessage());
+            }
+        } else if (asOf != null) {
+            try {
+                listTasksAsOf(asOf, statusFilter);
+            } catch (IllegalArgumentException e) {
+                System.out.println(e.getMessage());
+            }
+        } else if (statusFilter == null) {
+            listTasks(includeArchived);
         } else {
             try {
-                listTasksByStatus(statusFilter);
+                listTasksByStatus(statusFilter, includeArchived);
             } catch (IllegalArgumentException e) {
                 System.out.println(e.getMessage());
             }
@@ -138,61 +171,207 @@ public class TaskCLI implements Runnable {
     /**
      * Command to search tasks by keyword in their description, returning the top {@code k} matches.
      * <p>
-     * This command searches the task descriptions for the given keyword, using the Levenshtein distance
-     * to determine the similarity between the keyword and each task description. The command returns
-     * the top {@code k} tasks with the smallest Levenshtein distance to the keyword. If a task description
-     * contains the keyword exactly, it is considered a perfect match and will have the smallest distance (0).
+     * This command scores each task description against the given keyword and returns the top {@code k}
+     * tasks with the lowest score. If a task description contains the keyword exactly, it is considered a
+     * perfect match and has a score of 0. Otherwise each word of the keyword is matched against the closest
+     * word of the description by Levenshtein distance, and the distances are summed.
      * </p>
      *
      * @param keyword The keyword to search for in task descriptions.
      * @param k    The number of top matching tasks to return. Defaults to 5 if not specified.
+     * @param includeArchived Whether to also search archived tasks.
+     * @see TaskSearchEngine
      */
     @Command(name = "search", description = "Search description")
     private void searchCommand(
             @Parameters(index = "0", paramLabel = "keyword", description = "Search description") String keyword,
-            @Option(names = {"-k"}, description = "top k matches", defaultValue = "5") int k
+            @Option(names = {"-k"}, description = "top k matches", defaultValue = "5") int k,
+            @Option(names = {"--include-archived"}, description = "include archived tasks") boolean includeArchived
     ){
-        LevenshteinDistance ld = LevenshteinDistance.getDefaultInstance();
-        List<Task> tasks = taskManager.listTasks();
-        List<TaskMatch> taskMatches = tasks.stream()
-                .map(task -> {
-                    String description = task.getDescription();
-
-                    if (description.toLowerCase().contains(keyword.toLowerCase())) {
-                        return new TaskMatch(task, 0);
-                    }
+        try {
+            taskManager.searchTasks(keyword, k, includeArchived).stream()
+                    .map(TaskMatch::getTask)
+                    .forEach(System.out::println);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+        }
+    }
 
-                    int distance = ld.apply(description.toLowerCase(), keyword.toLowerCase());
+    /**
+     * Command to make a task depend on another task, or to remove such a dependency.
+     *
+     * @param id        The ID of the dependent task.
+     * @param blockerId The ID of the task it depends on.
+     * @param remove    Whether to remove the dependency instead of adding it.
+     */
+    @Command(name = "depend", description = "Make a task depend on another task")
+    private void dependCommand(
+            @Parameters(index = "0", paramLabel = "ID", description = "ID of the dependent task") String id,
+            @Parameters(index = "1", paramLabel = "BLOCKER_ID", description = "ID of the task it depends on") String blockerId,
+            @Option(names = {"-r", "--remove"}, description = "remove the dependency") boolean remove
+    ) {
+        try {
+            if (remove) {
+                taskManager.removeDependency(id, blockerId);
+            } else {
+                taskManager.addDependency(id, blockerId);
+            }
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+        }
+    }
 
-                    return new TaskMatch(task, distance);
-                }).sorted(Comparator.comparingInt(TaskMatch::getDistance)).toList();
+    /**
+     * Command to show the recorded changes of a task.
+     *
+     * @param id The ID of the task.
+     */
+    @Command(name = "history", description = "Show the change history of a task")
+    private void historyCommand(
+            @Parameters(index = "0", paramLabel = "ID", description = "ID of the task") String id
+    ) {
+        try {
+            List<TaskEvent> events = taskManager.getHistory(id);
+            if (events.isEmpty()) {
+                System.out.println("No history for task id: " + id);
+            }
+            events.forEach(System.out::println);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+        }
+    }
 
+    /**
+     * Command to revert the most recent change that has not been undone.
+     */
+    @Command(name = "undo", description = "Undo the last change")
+    private void undoCommand() {
+        taskManager.undo();
+    }
 
-        taskMatches.stream()
-                .limit((k))
-                .map(TaskMatch::getTask)
-                .forEach(System.out::println);
+    /**
+     * Command to compact the task store: removes deleted tasks and archives old completed tasks.
+     *
+     * @param archiveAfterDays The number of days since the last update after which DONE tasks are archived.
+     *                         Defaults to 30 if not specified.
+     */
+    @Command(name = "compact", description = "Remove deleted tasks and archive old done tasks")
+    private void compactCommand(
+            @Option(names = {"--archive-after-days"}, description = "archive DONE tasks not updated for this many days", defaultValue = "30") int archiveAfterDays
+    ) {
+        try {
+            taskManager.compact(Duration.ofDays(archiveAfterDays));
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+        }
     }
 
     /**
-     * Adds a new task with the given description.
+     * Command to serve the task store to local clients until the process is stopped.
      *
-     * @param description The description of the task.
+     * @param port The port to listen on. Defaults to 7878 if not specified.
+     * @see TaskServer
      */
-    private static void addTask(String description) throws IllegalArgumentException {
-        Task task = new Task(description);
-        taskManager.addTask(task);
-        System.out.println("Task added successfully (ID: " + task.getId() + ")");
+    @Command(name = "serve", description = "Serve tasks to local clients")
+    private void serveCommand(
+            @Option(names = {"-p", "--port"}, description = "port to listen on", defaultValue = "7878") int port
+    ) {
+        try {
+            TaskServer server = new TaskServer(taskManager, port);
+            Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+            System.out.println("Serving tasks on localhost:" + server.getPort());
+            server.serve();
+        } catch (IOException e) {
+            System.out.println("Error running server: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Command to generate load against a task server and report throughput and latency.
+     * <p>
+     * By default the load goes to a temporary server started in this process on an empty store
+     * in a temporary directory, which is deleted afterwards. Load is only sent to a running
+     * server when its port is given, because every task the load test adds stays in that
+     * server's store.
+     * </p>
+     *
+     * @param port              The port of a running server to load, or null to use a temporary server.
+     * @param clients           The number of concurrent clients. Defaults to 100 if not specified.
+     * @param requestsPerClient The number of requests per client. Defaults to 1000 if not specified.
+     * @param writePercent      The percentage of write requests. Defaults to 10 if not specified.
+     * @see TaskServerLoadGenerator
+     */
+    @Command(name = "loadtest", description = "Generate load against a temporary or running server")
+    private void loadTestCommand(
+            @Option(names = {"-p", "--port"}, description = "port of a running server to load (adds tasks to its store)") Integer port,
+            @Option(names = {"-c", "--clients"}, description = "concurrent clients", defaultValue = "100") int clients,
+            @Option(names = {"-n", "--requests"}, description = "requests per client", defaultValue = "1000") int requestsPerClient,
+            @Option(names = {"-w", "--writes"}, description = "percentage of writes", defaultValue = "10") int writePercent
+    ) {
+        try {
+            if (port != null) {
+                System.out.println("Generating load against localhost:" + port + ". Tasks it adds stay in that server's store.");
+                new TaskServerLoadGenerator(port, clients, requestsPerClient, writePercent).run();
+            } else {
+                runTemporaryLoadTest(clients, requestsPerClient, writePercent);
+            }
+        } catch (IllegalArgumentException | IOException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Runs a load test against a server on an empty store in a temporary directory, and
+     * deletes the directory afterwards.
+     *
+     * @param clients           The number of concurrent clients.
+     * @param requestsPerClient The number of requests per client.
+     * @param writePercent      The percentage of write requests.
+     * @throws IOException if the temporary store or server cannot be set up.
+     */
+    private static void runTemporaryLoadTest(int clients, int requestsPerClient, int writePercent) throws IOException {
+        Path directory = Files.createTempDirectory("tasktracker-loadtest");
+        try {
+            TaskManager temporaryManager = new TaskManager(directory.resolve("tasks.json").toString());
+            try (TaskServer server = new TaskServer(temporaryManager, 0)) {
+                TaskServerLoadGenerator generator =
+                        new TaskServerLoadGenerator(server.getPort(), clients, requestsPerClient, writePercent);
+                Thread serving = new Thread(() -> {
+                    try {
+                        server.serve();
+                    } catch (IOException e) {
+                        System.out.println("Error running server: " + e.getMessage());
+                    }
+                }, "loadtest-server");
+                serving.setDaemon(true);
+                serving.start();
+                System.out.println("Generating load against a temporary server on localhost:" + server.getPort());
+                generator.run();
+            }
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    private static void deleteDirectory(Path directory) {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        } catch (IOException e) {
+            System.out.println("Error deleting " + directory + ": " + e.getMessage());
+        }
     }
 
     /**
-     * Adds a new task with the given description and status.
+     * Adds a new task with the given description, status and parent.
      *
      * @param description The description of the task.
-     * @param status      The status of the task.
+     * @param status      The status of the task, or null for TODO.
+     * @param parentId    The ID of the parent task, or null for a top-level task.
+     * @throws IllegalArgumentException if the description or status is invalid, or the parent does not exist.
      */
-    private static void addTask(String description, String status) {
-        Task task = new Task(description, status);
+    private static void addTask(String description, String status, String parentId) throws IllegalArgumentException {
+        Task task = status == null ? new Task(description) : new Task(description, status);
+        task.setParentId(parentId);
         taskManager.addTask(task);
         System.out.println("Task added successfully (ID: " + task.getId() + ")");
     }
@@ -260,23 +439,57 @@ public class TaskCLI implements Runnable {
 
     /**
      * Lists all tasks.
+     *
+     * @param includeArchived Whether to also list archived tasks.
      */
-    private static void listTasks() {
-        List<Task> tasks = taskManager.listTasks();
+    private static void listTasks(boolean includeArchived) {
+        List<Task> tasks = taskManager.listTasks(includeArchived);
         tasks.forEach(System.out::println);
     }
 
+    /**
+     * Lists tasks as they were at the given time, optionally filtered by status.
+     *
+     * @param asOf   The point in time, in the format "yyyy-MM-dd HH:mm:ss".
+     * @param status The status to filter by, or null for all tasks.
+     * @throws IllegalArgumentException if the time or status is invalid.
+     */
+    private static void listTasksAsOf(String asOf, String status) throws IllegalArgumentException {
+        Status validStatus = status == null ? null : Status.validateStatus(status);
+        taskManager.listTasksAsOf(asOf).stream()
+                .filter(task -> validStatus == null || task.getStatusValue() == validStatus)
+                .forEach(System.out::println);
+    }
+
+    /**
+     * Lists the tasks that are ready to be worked on, optionally filtered by status.
+     *
+     * @param status The status to filter by, or null to list all ready tasks.
+     * @throws IllegalArgumentException if the status is invalid.
+     */
+    private static void listReadyTasks(String status) throws IllegalArgumentException {
+        Status validStatus = status == null ? null : Status.validateStatus(status);
+        taskManager.listReadyTasks().stream()
+                .filter(task -> validStatus == null || task.getStatusValue() == validStatus)
+                .forEach(System.out::println);
+    }
+
     /**
      * Lists tasks filtered by status.
      *
-     * @param status The status to filter by.
+     * @param status          The status to filter by.
+     * @param includeArchived Whether to also list archived tasks.
      * @throws IllegalArgumentException if the status is invalid.
      */
-    private static void listTasksByStatus(String status) throws IllegalArgumentException {
-        String validStatus = Status.validateStatus(status).toString();
-        List<Task> tasks = taskManager.listTasks();
+    private static void listTasksByStatus(String status, boolean includeArchived) throws IllegalArgumentException {
+        Status validStatus = Status.validateStatus(status);
+        if (!includeArchived) {
+            taskManager.listTasks(validStatus).forEach(System.out::println);
+            return;
+        }
+        List<Task> tasks = taskManager.listTasks(true);
         tasks.stream()
-                .filter(task -> task.getStatus().equals(validStatus))
+                .filter(task -> task.getStatusValue() == validStatus)
                 .forEach(System.out::println);
     }
 
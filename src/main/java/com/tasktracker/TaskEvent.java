@@ -0,0 +1,119 @@
+package com.tasktracker;
+
+/**
+ * A single recorded change to one field of a task.
+ * <p>
+ * Events that belong to the same mutation (e.g. updating both the description and the status)
+ * share a change number ({@link #getChange()}). The field is one of {@code created},
+ * {@code description}, {@code status}, {@code deleted}, {@code dependency} or {@code skipped}. A
+ * {@code dependency} event has the ID of the added dependency as its new value, or of the
+ * removed one as its old value. A {@code skipped} event has no values: it records that undo
+ * could not revert the change given by {@link #getUndoOf()}.
+ * </p>
+ */
+public class TaskEvent {
+    private final long sequence;
+    private final long change;
+    private final long undoOf;
+    private final long timestamp;
+    private final String taskId;
+    private final String field;
+    private final String oldValue;
+    private final String newValue;
+    private final String taskJson;
+
+    TaskEvent(long sequence, long change, long undoOf, long timestamp, String taskId, String field,
+              String oldValue, String newValue, String taskJson) {
+        this.sequence = sequence;
+        this.change = change;
+        this.undoOf = undoOf;
+        this.timestamp = timestamp;
+        this.taskId = taskId;
+        this.field = field;
+        this.oldValue = oldValue;
+        this.newValue = newValue;
+        this.taskJson = taskJson;
+    }
+
+    /**
+     * @return The position of the event in the event log, starting at 1.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * @return The number of the mutation this event belongs to.
+     */
+    public long getChange() {
+        return change;
+    }
+
+    /**
+     * @return The number of the mutation this event reverts, or 0 if it is not part of an undo.
+     */
+    public long getUndoOf() {
+        return undoOf;
+    }
+
+    /**
+     * @return The time of the event as epoch seconds of the local wall-clock time.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public String getTaskId() {
+        return taskId;
+    }
+
+    public String getField() {
+        return field;
+    }
+
+    /**
+     * @return The value before the change, or {@code null} if the field had no value.
+     */
+    public String getOldValue() {
+        return oldValue;
+    }
+
+    /**
+     * @return The value after the change, or {@code null} if the field has no value.
+     */
+    public String getNewValue() {
+        return newValue;
+    }
+
+    /**
+     * @return The full task as JSON for {@code created} and {@code deleted} events, otherwise {@code null}.
+     */
+    String getTaskJson() {
+        return taskJson;
+    }
+
+    /**
+     * Returns a one-line description of the event, e.g.
+     * {@code 2024-01-02 03:04:05 #12 status: TODO -> DONE}.
+     *
+     * @return a string describing the event
+     */
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder()
+                .append(Task.formatTime(timestamp))
+                .append(" #").append(change)
+                .append(' ').append(field);
+        if (oldValue != null || newValue != null) {
+            text.append(": ");
+            if (oldValue != null) {
+                text.append(oldValue).append(" -> ");
+            }
+            text.append(newValue);
+        }
+        if (undoOf != 0) {
+            text.append(" (undo of #").append(undoOf).append(')');
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,658 @@
+package com.tasktracker;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Records every mutation of a task store as events and answers questions about the past.
+ * <p>
+ * The history lives in a directory next to the tasks file ({@code tasks.json.history}). It holds
+ * an append-only event log with one JSON event per line, and gzip-compressed checkpoints of the
+ * full task state with one task per line. Reading the tasks as of a point in time streams the
+ * nearest earlier checkpoint and applies the events after it, which are the only part held in
+ * memory.
+ * </p>
+ * <p>
+ * A checkpoint is written by merging the events since the previous checkpoint into it, once
+ * there are at least {@value #CHECKPOINT_INTERVAL} of them and they take at least as many bytes
+ * as the previous checkpoint. Writing checkpoints thus costs about as much as appending the
+ * events, however many tasks there are. Checkpoints are thinned out with age: the first one is
+ * always kept, and the others are kept so that the events between two checkpoints are at most
+ * 1/{@value #CHECKPOINT_SPACING} of the age of the older one. Reading a past state replays a
+ * bounded share of the events since then, and the number of checkpoints grows only
+ * logarithmically with the length of the history.
+ * </p>
+ * <p>
+ * Tombstones are left out of checkpoints: a deleted task is only visible again after an event
+ * restoring it, and that event carries the whole task.
+ * </p>
+ * <p>
+ * The history describes the logical tasks: compaction and archiving are not recorded, and
+ * archived tasks remain visible in past states.
+ * </p>
+ */
+final class TaskHistory {
+
+    private static final String EVENTS_FILE = "events.jsonl";
+    private static final Pattern CHECKPOINT_NAME = Pattern.compile("checkpoint-(\\d+)-(-?\\d+)\\.json\\.gz");
+    private static final int CHECKPOINT_INTERVAL = 1000;
+    private static final int CHECKPOINT_SPACING = 4;
+    private static final int READ_CHUNK_SIZE = 64 * 1024;
+
+    private final Path directory;
+    private final Path eventsPath;
+
+    TaskHistory(Path directory) {
+        this.directory = directory;
+        this.eventsPath = directory.resolve(EVENTS_FILE);
+    }
+
+    /**
+     * @return {@code true} if the history has been initialized.
+     */
+    boolean exists() {
+        return Files.isDirectory(directory);
+    }
+
+    /**
+     * Starts a new history whose first checkpoint is the given tasks.
+     *
+     * @param tasks The current tasks.
+     * @throws IOException if the history cannot be written.
+     */
+    void initialize(List<Task> tasks) throws IOException {
+        Files.createDirectories(directory);
+        writeCheckpoint(new Checkpoint(0, Task.getCurrentTime(), 0, null), visitor -> {
+            for (Task task : tasks) {
+                visitor.visit(TaskManager.toJson(task));
+            }
+        });
+    }
+
+    /**
+     * Appends the given changes to the event log and writes a checkpoint if one is due.
+     *
+     * @param changes The changes to record, in the order they were applied.
+     * @throws IOException if the history cannot be written.
+     */
+    void append(List<Change> changes) throws IOException {
+        if (changes.isEmpty()) {
+            return;
+        }
+        JSONObject last = lastEvent();
+        long sequence = last == null ? 0 : last.getLong("seq");
+        long timestamp = Task.getCurrentTime();
+        try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(eventsPath,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND), StandardCharsets.UTF_8))) {
+            for (Change change : changes) {
+                long changeNumber = sequence + 1;
+                for (JSONObject event : change.events) {
+                    event.put("seq", ++sequence);
+                    event.put("change", changeNumber);
+                    event.put("ts", timestamp);
+                    if (change.undoOf != 0) {
+                        event.put("undoOf", change.undoOf);
+                    }
+                    writer.write(event.toString());
+                    writer.newLine();
+                }
+            }
+        }
+        Checkpoint latest = latestCheckpoint(Long.MAX_VALUE);
+        long offset = Files.size(eventsPath);
+        if (latest == null || (sequence - latest.sequence >= CHECKPOINT_INTERVAL
+                && offset - readOffset(latest) >= Files.size(latest.file))) {
+            writeCheckpoint(new Checkpoint(sequence, timestamp, offset, null),
+                    visitor -> replay(latest, Long.MAX_VALUE, visitor));
+        }
+    }
+
+    /**
+     * Reads all events of one task, oldest first.
+     *
+     * @param id The ID of the task.
+     * @return The events of the task.
+     * @throws IOException if the event log cannot be read.
+     */
+    List<TaskEvent> history(String id) throws IOException {
+        List<TaskEvent> events = new ArrayList<>();
+        if (!Files.exists(eventsPath)) {
+            return events;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(eventsPath, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                JSONObject event = new JSONObject(line);
+                if (id.equals(event.getString("id"))) {
+                    events.add(toEvent(event));
+                }
+            }
+        }
+        return events;
+    }
+
+    /**
+     * Finds the events of the most recent change that has not been undone, reading the log backwards.
+     * Undo changes themselves are never undone; undoing repeatedly walks further back in time.
+     *
+     * @return The events of the change in the order they were applied, or an empty list if there is nothing to undo.
+     * @throws IOException if the event log cannot be read.
+     */
+    List<TaskEvent> lastUndoableChange() throws IOException {
+        List<TaskEvent> events = new ArrayList<>();
+        if (!Files.exists(eventsPath)) {
+            return events;
+        }
+        Set<Long> undone = new HashSet<>();
+        long target = -1;
+        try (ReverseLineReader reader = new ReverseLineReader(eventsPath)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                JSONObject event = new JSONObject(line);
+                long change = event.getLong("change");
+                long undoOf = event.optLong("undoOf", 0);
+                if (target >= 0) {
+                    if (change != target) {
+                        break; // Events of one change are contiguous
+                    }
+                    events.add(0, toEvent(event));
+                } else if (undoOf != 0) {
+                    undone.add(undoOf);
+                } else if (!undone.contains(change)) {
+                    target = change;
+                    events.add(toEvent(event));
+                }
+            }
+        }
+        return events;
+    }
+
+    /**
+     * Rebuilds the tasks as they were at the given time.
+     *
+     * @param timestamp The point in time, as epoch seconds of the local wall-clock time.
+     * @return The tasks that existed and were not deleted at that time. Returns an empty list
+     * for times before the history began.
+     * @throws IOException if the history cannot be read.
+     */
+    List<Task> tasksAsOf(long timestamp) throws IOException {
+        List<Task> tasks = new ArrayList<>();
+        Checkpoint checkpoint = latestCheckpoint(timestamp);
+        if (checkpoint == null) {
+            return tasks;
+        }
+        replay(checkpoint, timestamp, taskJson -> {
+            if (!taskJson.optBoolean("deleted", false)) {
+                tasks.add(TaskManager.fromJson(taskJson));
+            }
+        });
+        return tasks;
+    }
+
+    /**
+     * Streams the tasks of a checkpoint with the events after it up to the given time applied.
+     * Only the events are held in memory.
+     *
+     * @param checkpoint The checkpoint to start from, or {@code null} to start from the beginning.
+     * @param timestamp  The last event time to apply.
+     * @param visitor    Receives each task state: the tasks of the checkpoint in order, then the
+     *                   tasks that only appear in the events.
+     * @throws IOException if the history cannot be read.
+     */
+    private void replay(Checkpoint checkpoint, long timestamp, TaskVisitor visitor) throws IOException {
+        Map<String, List<String>> events = readEvents(checkpoint == null ? 0 : readOffset(checkpoint), timestamp);
+        if (checkpoint != null) {
+            readCheckpoint(checkpoint, task -> {
+                List<String> taskEvents = events.remove(task.getString("id"));
+                visitor.visit(taskEvents == null ? task : apply(task, taskEvents));
+            });
+        }
+        for (List<String> taskEvents : events.values()) {
+            JSONObject task = apply(null, taskEvents);
+            if (task != null) {
+                visitor.visit(task);
+            }
+        }
+    }
+
+    /**
+     * Reads the events from the given position of the event log up to the given time.
+     *
+     * @param offset    The position in the event log to start at.
+     * @param timestamp The last event time to read.
+     * @return The lines of the events by task id, in order of each task's first event.
+     * @throws IOException if the event log cannot be read.
+     */
+    private Map<String, List<String>> readEvents(long offset, long timestamp) throws IOException {
+        Map<String, List<String>> events = new LinkedHashMap<>();
+        if (!Files.exists(eventsPath)) {
+            return events;
+        }
+        try (FileChannel channel = FileChannel.open(eventsPath, StandardOpenOption.READ)) {
+            channel.position(offset);
+            BufferedReader reader = new BufferedReader(new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                JSONObject event = new JSONObject(line);
+                if (event.getLong("ts") > timestamp) {
+                    break;
+                }
+                events.computeIfAbsent(event.getString("id"), id -> new ArrayList<>()).add(line);
+            }
+        }
+        return events;
+    }
+
+    /**
+     * Applies the events of one task to its state.
+     *
+     * @param task   The state of the task, or {@code null} if it is not known yet.
+     * @param events The lines of the task's events, oldest first.
+     * @return The new state, or {@code null} if the task is still unknown.
+     */
+    private static JSONObject apply(JSONObject task, List<String> events) {
+        for (String line : events) {
+            task = apply(task, new JSONObject(line));
+        }
+        return task;
+    }
+
+    /**
+     * Applies one event to a task state.
+     *
+     * @return The new state, or {@code null} if the task is still unknown.
+     */
+    private static JSONObject apply(JSONObject task, JSONObject event) {
+        String field = event.getString("field");
+        if (task == null) {
+            task = event.optJSONObject("task");
+            if (task == null) {
+                return null; // The task is unknown, e.g. it predates the history
+            }
+            if ("created".equals(field)) {
+                return task;
+            }
+        }
+        String updatedAt = Task.formatTime(event.getLong("ts"));
+        switch (field) {
+            case "description":
+                task.put("description", event.getString("new"));
+                break;
+            case "status":
+                task.put("status", event.getString("new"));
+                break;
+            case "deleted":
+                task.put("deleted", Boolean.parseBoolean(event.getString("new")));
+                break;
+            case "dependency":
+                applyDependency(task, event.optString("old", null), event.optString("new", null));
+                return task; // Dependencies don't change updatedAt
+            default:
+                return task;
+        }
+        task.put("updatedAt", updatedAt);
+        return task;
+    }
+
+    private static void applyDependency(JSONObject task, String removed, String added) {
+        JSONArray dependsOn = task.optJSONArray("dependsOn");
+        if (dependsOn == null) {
+            dependsOn = new JSONArray();
+        }
+        JSONArray updated = new JSONArray();
+        for (int i = 0; i < dependsOn.length(); i++) {
+            String id = dependsOn.getString(i);
+            if (!id.equals(removed) && !id.equals(added)) {
+                updated.put(id);
+            }
+        }
+        if (added != null) {
+            updated.put(added);
+        }
+        if (updated.length() == 0) {
+            task.remove("dependsOn");
+        } else {
+            task.put("dependsOn", updated);
+        }
+    }
+
+    private static TaskEvent toEvent(JSONObject event) {
+        JSONObject task = event.optJSONObject("task");
+        return new TaskEvent(
+                event.getLong("seq"),
+                event.getLong("change"),
+                event.optLong("undoOf", 0),
+                event.getLong("ts"),
+                event.getString("id"),
+                event.getString("field"),
+                event.optString("old", null),
+                event.optString("new", null),
+                task == null ? null : task.toString());
+    }
+
+    private JSONObject lastEvent() throws IOException {
+        if (!Files.exists(eventsPath)) {
+            return null;
+        }
+        try (ReverseLineReader reader = new ReverseLineReader(eventsPath)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    return new JSONObject(line);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Finds the most recent checkpoint taken at or before the given time.
+     *
+     * @param timestamp The latest acceptable checkpoint time.
+     * @return The checkpoint, or {@code null} if there is none.
+     * @throws IOException if the history directory cannot be listed.
+     */
+    private Checkpoint latestCheckpoint(long timestamp) throws IOException {
+        Checkpoint latest = null;
+        for (Checkpoint checkpoint : listCheckpoints()) {
+            if (checkpoint.timestamp <= timestamp && (latest == null || checkpoint.sequence > latest.sequence)) {
+                latest = checkpoint;
+            }
+        }
+        return latest;
+    }
+
+    private List<Checkpoint> listCheckpoints() throws IOException {
+        List<Checkpoint> checkpoints = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return checkpoints;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "checkpoint-*.json.gz")) {
+            for (Path file : files) {
+                Matcher matcher = CHECKPOINT_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    checkpoints.add(new Checkpoint(Long.parseLong(matcher.group(1)), Long.parseLong(matcher.group(2)), -1, file));
+                }
+            }
+        }
+        checkpoints.sort((a, b) -> Long.compare(a.sequence, b.sequence));
+        return checkpoints;
+    }
+
+    /**
+     * Reads the position in the event log that a checkpoint was taken at from its first line.
+     */
+    private long readOffset(Checkpoint checkpoint) throws IOException {
+        if (checkpoint.offset < 0) {
+            try (BufferedReader reader = openCheckpoint(checkpoint)) {
+                checkpoint.offset = new JSONObject(reader.readLine()).getLong("offset");
+            }
+        }
+        return checkpoint.offset;
+    }
+
+    /**
+     * Streams the tasks of a checkpoint.
+     * <p>
+     * The first line holds the position in the event log and each further line one task.
+     * Checkpoints of earlier versions are a single JSON object with a {@code tasks} array.
+     * </p>
+     */
+    private void readCheckpoint(Checkpoint checkpoint, TaskVisitor visitor) throws IOException {
+        try (BufferedReader reader = openCheckpoint(checkpoint)) {
+            JSONObject header = new JSONObject(reader.readLine());
+            JSONArray tasks = header.optJSONArray("tasks");
+            if (tasks != null) {
+                for (int i = 0; i < tasks.length(); i++) {
+                    visitor.visit(tasks.getJSONObject(i));
+                }
+                return;
+            }
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    visitor.visit(new JSONObject(line));
+                }
+            }
+        }
+    }
+
+    private static BufferedReader openCheckpoint(Checkpoint checkpoint) throws IOException {
+        return new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(checkpoint.file)), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Writes a checkpoint of the given tasks, leaving out tombstones, and thins out older checkpoints.
+     */
+    private void writeCheckpoint(Checkpoint checkpoint, TaskSource tasks) throws IOException {
+        String name = "checkpoint-" + checkpoint.sequence + "-" + checkpoint.timestamp + ".json.gz";
+        Path temp = directory.resolve(name + ".tmp");
+        try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
+                new GZIPOutputStream(Files.newOutputStream(temp)), StandardCharsets.UTF_8))) {
+            writer.write(new JSONObject()
+                    .put("seq", checkpoint.sequence)
+                    .put("ts", checkpoint.timestamp)
+                    .put("offset", checkpoint.offset)
+                    .toString());
+            writer.newLine();
+            tasks.forEach(task -> {
+                if (!task.optBoolean("deleted", false)) {
+                    writer.write(task.toString());
+                    writer.newLine();
+                }
+            });
+        }
+        Files.move(temp, directory.resolve(name), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        thinCheckpoints();
+    }
+
+    /**
+     * Deletes checkpoints that are closer to the next newer kept checkpoint than
+     * 1/{@link #CHECKPOINT_SPACING} of their age, measured in events. The first and the
+     * latest checkpoint are always kept.
+     */
+    private void thinCheckpoints() throws IOException {
+        List<Checkpoint> checkpoints = listCheckpoints();
+        if (checkpoints.size() <= 2) {
+            return;
+        }
+        long latest = checkpoints.get(checkpoints.size() - 1).sequence;
+        long newer = latest;
+        for (int i = checkpoints.size() - 2; i > 0; i--) {
+            Checkpoint checkpoint = checkpoints.get(i);
+            if ((newer - checkpoint.sequence) * CHECKPOINT_SPACING >= latest - checkpoint.sequence) {
+                newer = checkpoint.sequence;
+            } else {
+                Files.deleteIfExists(checkpoint.file);
+            }
+        }
+    }
+
+    /**
+     * Receives task states one at a time.
+     */
+    private interface TaskVisitor {
+        void visit(JSONObject task) throws IOException;
+    }
+
+    /**
+     * Produces task states one at a time.
+     */
+    private interface TaskSource {
+        void forEach(TaskVisitor visitor) throws IOException;
+    }
+
+    /**
+     * A group of events recorded for one mutation.
+     */
+    static final class Change {
+        private final long undoOf;
+        private final List<JSONObject> events = new ArrayList<>();
+        private final Set<Task> tasks = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        Change() {
+            this(0);
+        }
+
+        /**
+         * @param undoOf The number of the change this change reverts, or 0.
+         */
+        Change(long undoOf) {
+            this.undoOf = undoOf;
+        }
+
+        /**
+         * Adds an event for one field of a task.
+         *
+         * @param task     The task after the change.
+         * @param field    The changed field.
+         * @param oldValue The value before the change, or {@code null}.
+         * @param newValue The value after the change.
+         */
+        void add(Task task, String field, String oldValue, String newValue) {
+            JSONObject event = new JSONObject()
+                    .put("id", task.getId())
+                    .put("field", field)
+                    .put("old", oldValue)
+                    .put("new", newValue);
+            if ("created".equals(field) || "deleted".equals(field)) {
+                event.put("task", TaskManager.toJson(task));
+            }
+            events.add(event);
+            tasks.add(task);
+        }
+
+        /**
+         * Adds an event recording that the change being undone could not be reverted, so
+         * that undo moves past it. The event doesn't change the task.
+         *
+         * @param taskId The ID of a task of the change being undone.
+         */
+        void skip(String taskId) {
+            events.add(new JSONObject().put("id", taskId).put("field", "skipped"));
+        }
+
+        boolean isEmpty() {
+            return events.isEmpty();
+        }
+
+        /**
+         * @return The tasks changed by the events, each once.
+         */
+        Set<Task> tasks() {
+            return tasks;
+        }
+    }
+
+    /**
+     * A checkpoint file and the position in the event log it corresponds to.
+     */
+    private static final class Checkpoint {
+        private final long sequence;
+        private final long timestamp;
+        private long offset;
+        private final Path file;
+
+        Checkpoint(long sequence, long timestamp, long offset, Path file) {
+            this.sequence = sequence;
+            this.timestamp = timestamp;
+            this.offset = offset;
+            this.file = file;
+        }
+    }
+
+    /**
+     * Reads the lines of a UTF-8 file from the last line to the first.
+     */
+    private static final class ReverseLineReader implements Closeable {
+        private final RandomAccessFile file;
+        private final Deque<String> lines = new ArrayDeque<>();
+        private long position;
+        private byte[] carry = new byte[0];
+
+        ReverseLineReader(Path path) throws IOException {
+            this.file = new RandomAccessFile(path.toFile(), "r");
+            this.position = file.length();
+        }
+
+        /**
+         * @return The previous line, or {@code null} at the start of the file.
+         * @throws IOException if the file cannot be read.
+         */
+        String readLine() throws IOException {
+            while (lines.isEmpty()) {
+                if (position == 0) {
+                    if (carry == null) {
+                        return null;
+                    }
+                    String first = new String(carry, StandardCharsets.UTF_8);
+                    carry = null;
+                    return first;
+                }
+                int length = (int) Math.min(READ_CHUNK_SIZE, position);
+                position -= length;
+                byte[] chunk = new byte[length + carry.length];
+                file.seek(position);
+                file.readFully(chunk, 0, length);
+                System.arraycopy(carry, 0, chunk, length, carry.length);
+
+                // Bytes before the first newline may continue in the previous chunk.
+                int end = chunk.length;
+                for (int i = chunk.length - 1; i >= 0; i--) {
+                    if (chunk[i] == '\n') {
+                        lines.addLast(new String(chunk, i + 1, end - i - 1, StandardCharsets.UTF_8));
+                        end = i;
+                    }
+                }
+                carry = Arrays.copyOf(chunk, end);
+            }
+            return lines.pollFirst();
+        }
+
+        @Override
+        public void close() throws IOException {
+            file.close();
+        }
+    }
+}
@@ -1,10 +1,31 @@
 package com.tasktracker;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
@@ -18,19 +39,100 @@ import org.json.JSONObject;
  * The file is created if it doesn't exist.  It utilizes the {@link Task} class
  * to represent individual tasks.
  * </p>
+ * <p>
+ * The decoded tasks are cached between calls. The cache is validated against the file's
+ * modification time, size and file key before each use, so the file is only re-read and
+ * re-parsed when another writer has changed it. Mutations made through this instance are
+ * applied to the cache directly; tasks returned to callers are copies, so changing them does
+ * not change the cache or the file. On file systems with coarse timestamps, another writer can
+ * rewrite the file within the same timestamp tick without changing its size (e.g. flipping a
+ * status). While the file's modification time is that close to when the cache was filled, the
+ * CRC-32 of the file is therefore compared as well, the same way git treats "racily clean"
+ * files. Once the timestamp is older than that, the attributes alone are trusted.
+ * </p>
+ * <p>
+ * Deleted tasks are kept in the file as tombstones until {@link #compact(Duration)} runs.
+ * Compaction drops the tombstones and moves old {@code DONE} tasks to a gzip-compressed
+ * archive file next to the tasks file ({@code tasks.json.archive.gz}), which is only read
+ * when archived tasks are explicitly requested.
+ * </p>
+ * <p>
+ * Tasks files ending in {@code .blocks} use the compressed {@link BlockTaskStore} layout. With
+ * that layout, {@link #findTask(String)} and {@link #listTasks(Status)} only decompress the
+ * blocks they need when the cache is cold.
+ * </p>
+ * <p>
+ * Tasks can have a parent task and can depend on other tasks. The {@link DependencyGraph} of
+ * which tasks are ready is built from the cached tasks on first use and then kept up to date
+ * by each mutation, so it is only rebuilt when the tasks are re-read from the file.
+ * </p>
  */
 public class TaskManager {
 
     private static final String TASKS_FILE = "tasks.json";
+    private static final String TASKS_FILE_PROPERTY = "tasktracker.file";
+    private static final String ARCHIVE_SUFFIX = ".archive.gz";
+    private static final String HISTORY_SUFFIX = ".history";
+    private static final long RACY_WINDOW_MILLIS = 2000; // Coarsest common timestamp granularity (FAT)
+    private static final long NO_CHECKSUM = -1;
+
+    private final Path tasksPath;
+    private final Path archivePath;
+    private final boolean blockLayout;
+    private boolean verbose = true;
+    private int batchDepth;
+    private List<Task> pendingWrite;
+    private final List<TaskHistory.Change> pendingChanges = new ArrayList<>();
+    private final TaskHistory history;
+    private List<Task> cachedTasks;
+    private FileTime cachedModifiedTime;
+    private long cachedSize = -1;
+    private Object cachedFileKey;
+    private long cachedChecksum = NO_CHECKSUM;
+    private long cacheVerifiedAt;
+    private TaskSearchEngine searchEngine;
+    private DependencyGraph dependencyGraph;
+    private ChangeListener changeListener;
 
     /**
      * Constructs a new TaskManager.  Initializes the tasks file if it doesn't exist.
      * If the file doesn't exist, it's created and initialized with an empty list of tasks.
+     * The file is {@code tasks.json} unless the {@code tasktracker.file} system property names another one.
      *
      * @throws RuntimeException if an IOException occurs while creating the file.
      */
     public TaskManager() {
-        File tasksFile = new File(TASKS_FILE);
+        this(System.getProperty(TASKS_FILE_PROPERTY, TASKS_FILE));
+    }
+
+    /**
+     * Constructs a new TaskManager backed by the given file.  Initializes the file if it doesn't exist.
+     * Files whose name ends with {@value BlockTaskStore#FILE_SUFFIX} use the compressed
+     * {@link BlockTaskStore block layout}; all other files are stored as a JSON array.
+     *
+     * @param tasksFile The path of the file to store tasks in. Must not be null or empty.
+     * @throws IllegalArgumentException if tasksFile is null or empty.
+     * @throws RuntimeException if an IOException occurs while creating the file.
+     */
+    public TaskManager(String tasksFile) {
+        if (tasksFile == null || tasksFile.trim().isEmpty()) {
+            throw new IllegalArgumentException("Tasks file cannot be null or empty.");
+        }
+        this.tasksPath = Paths.get(tasksFile);
+        this.archivePath = Paths.get(tasksFile + ARCHIVE_SUFFIX);
+        this.blockLayout = BlockTaskStore.isBlockFile(tasksPath);
+        this.history = new TaskHistory(Paths.get(tasksFile + HISTORY_SUFFIX));
+        initializeFile();
+        initializeHistory();
+    }
+
+    /**
+     * Creates the tasks file with an empty list of tasks if it doesn't exist.
+     *
+     * @throws RuntimeException if an IOException occurs while creating the file.
+     */
+    private void initializeFile() {
+        File tasksFile = tasksPath.toFile();
         if (!tasksFile.exists()) {
             try {
                 if (tasksFile.createNewFile()) {
@@ -45,37 +147,69 @@ public class TaskManager {
     }
 
     /**
-     * Loads tasks from the {@code tasks.json} file.
+     * Starts the history with a checkpoint of the current tasks if it doesn't exist yet.
+     *
+     * @throws RuntimeException if an IOException occurs while creating the history.
+     */
+    private void initializeHistory() {
+        if (history.exists()) {
+            return;
+        }
+        try {
+            history.initialize(listTasks(true));
+        } catch (IOException e) {
+            throw new RuntimeException("Error initializing task history: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Loads tasks from the tasks file, or from the cache if the file is unchanged.
      *
      * <p>
      * Reads the contents of the JSON file, parses it into a JSONArray, and
      * creates {@link Task} objects from each JSON object. Handles potential
      * exceptions during file reading or JSON parsing.
      * </p>
+     * <p>
+     * The returned list is the cached list itself; callers that modify it must
+     * persist it with {@link #writeTasks(List)} so the cache and file stay in sync.
+     * </p>
      *
      * @return A list of {@link Task} objects loaded from the file.  Returns an empty list
      * if the file is empty or if an error occurs during loading.
      */
     private List<Task> loadTasks() {
+        if (pendingWrite != null) {
+            return pendingWrite; // The batch owns the file until it is written
+        }
+        long readAt = System.currentTimeMillis();
+        BasicFileAttributes attributes = readAttributes();
+        if (cachedTasks != null && isCacheValid(attributes)) {
+            return cachedTasks;
+        }
         List<Task> tasks = new ArrayList<>();
         try {
-            String content = new String(java.nio.file.Files.readAllBytes(java.nio.file.Paths.get(TASKS_FILE)));
+            if (blockLayout) {
+                // Taken before reading: if the file changes in between, the next check just re-reads it.
+                long checksum = attributes != null && isRacy(attributes.lastModifiedTime(), readAt)
+                        ? checksum(tasksPath) : NO_CHECKSUM;
+                tasks = BlockTaskStore.readAll(tasksPath);
+                updateCache(tasks, attributes, checksum, readAt);
+                return tasks;
+            }
+            byte[] bytes = Files.readAllBytes(tasksPath);
+            String content = new String(bytes, StandardCharsets.UTF_8);
             if (content.trim().isEmpty()) {
+                updateCache(tasks, attributes, checksum(bytes), readAt);
                 return tasks; // Handle empty file
             }
             JSONArray jsonArray = new JSONArray(content);
             for (int i = 0; i < jsonArray.length(); i++) {
-                JSONObject taskJson = jsonArray.getJSONObject(i);
-                Task task = new Task(
-                        taskJson.getString("id"),
-                        taskJson.getString("description"),
-                        taskJson.getString("status"),
-                        taskJson.getString("createdAt"),
-                        taskJson.getString("updatedAt")
-                );
-                tasks.add(task);
+                tasks.add(fromJson(jsonArray.getJSONObject(i)));
             }
+            updateCache(tasks, attributes, checksum(bytes), readAt);
         } catch (Exception e) {
+            invalidateCache();
             System.err.println("Error loading tasks: " + e.getMessage()); // Log the error instead of printing to console.
             e.printStackTrace(); // Print stack trace for debugging purposes
         }
@@ -83,11 +217,12 @@ public class TaskManager {
     }
 
     /**
-     * Writes the given list of tasks to the {@code tasks.json} file.
+     * Writes the given list of tasks to the tasks file.
      *
      * <p>
      * Converts each {@link Task} object to a JSONObject and then writes the
      * resulting JSONArray to the file. Handles potential exceptions during file writing.
+     * Inside {@link #runBatch(Runnable)}, the write is deferred until the batch ends.
      * </p>
      *
      * @param tasks The list of {@link Task} objects to write to the file.  If tasks is null,
@@ -98,36 +233,439 @@ public class TaskManager {
         if (tasks == null) {
             return;  // Handle null tasks list gracefully.  Perhaps log a warning here.
         }
+        if (batchDepth > 0) {
+            pendingWrite = tasks;
+            return;
+        }
+        long writtenAt = System.currentTimeMillis();
+        long checksum;
+        try {
+            if (blockLayout) {
+                checksum = BlockTaskStore.write(tasksPath, tasks);
+            } else {
+                checksum = writeJson(tasks);
+            }
+        } catch (IOException e) {
+            invalidateCache();
+            pendingChanges.clear();
+            throw new RuntimeException("Error writing tasks to file: " + e.getMessage(), e); // Re-throw as RuntimeException.
+        }
+        updateCache(tasks, readAttributes(), checksum, writtenAt);
+        recordChanges();
+    }
+
+    /**
+     * Writes the given list of tasks to the tasks file and records the change in the history
+     * once the write succeeds.
+     *
+     * @param tasks  The list of {@link Task} objects to write to the file.
+     * @param change The change that was applied to the tasks.
+     * @throws RuntimeException if an IOException occurs while writing to the file.
+     */
+    private void writeTasks(List<Task> tasks, TaskHistory.Change change) {
+        if (!change.isEmpty()) {
+            pendingChanges.add(change);
+        }
+        updateSearchEngine(tasks, change);
+        if (changeListener != null) {
+            changeListener.tasksChanged(change.tasks());
+        }
+        writeTasks(tasks);
+    }
+
+    /**
+     * Re-indexes the tasks touched by a change in the search index, if one is built for
+     * the cached tasks, so it doesn't have to be rebuilt after the write.
+     *
+     * @param tasks  The tasks the change was applied to.
+     * @param change The change.
+     */
+    private void updateSearchEngine(List<Task> tasks, TaskHistory.Change change) {
+        if (searchEngine == null) {
+            return;
+        }
+        if (tasks != cachedTasks) {
+            searchEngine = null;
+            return;
+        }
+        for (Task task : change.tasks()) {
+            if (task.isDeleted()) {
+                searchEngine.remove(task.getId());
+            } else {
+                searchEngine.put(task);
+            }
+        }
+    }
+
+    /**
+     * Appends the changes written since the last call to the history.
+     * A failure is reported but does not undo the write that already succeeded.
+     */
+    private void recordChanges() {
+        if (pendingChanges.isEmpty()) {
+            return;
+        }
+        try {
+            history.append(pendingChanges);
+        } catch (IOException e) {
+            System.err.println("Error recording task history: " + e.getMessage());
+        } finally {
+            pendingChanges.clear();
+        }
+    }
+
+    /**
+     * Writes the tasks to the tasks file as a JSON array.
+     *
+     * @param tasks The tasks to write.
+     * @return The CRC-32 of the written file.
+     * @throws IOException if the file cannot be written.
+     */
+    private long writeJson(List<Task> tasks) throws IOException {
         JSONArray jsonArray = new JSONArray();
         for (Task task : tasks) {
-            JSONObject taskJson = new JSONObject();
-            taskJson.put("id", task.getId());
-            taskJson.put("description", task.getDescription());
-            taskJson.put("status", task.getStatus());
-            taskJson.put("createdAt", task.getCreatedAt());
-            taskJson.put("updatedAt", task.getUpdatedAt());
-            jsonArray.put(taskJson);
-        }
-        try (FileWriter file = new FileWriter(TASKS_FILE)) {
-            file.write(jsonArray.toString());
+            jsonArray.put(toJson(task));
+        }
+        byte[] bytes = jsonArray.toString().getBytes(StandardCharsets.UTF_8);
+        Files.write(tasksPath, bytes);
+        return checksum(bytes);
+    }
+
+    /**
+     * Converts a task to its JSON representation in the tasks file.
+     *
+     * @param task The task to convert.
+     * @return The JSON object for the task.
+     */
+    static JSONObject toJson(Task task) {
+        JSONObject taskJson = new JSONObject();
+        taskJson.put("id", task.getId());
+        taskJson.put("description", task.getDescription());
+        taskJson.put("status", task.getStatus());
+        taskJson.put("createdAt", task.getCreatedAt());
+        taskJson.put("updatedAt", task.getUpdatedAt());
+        if (task.getParentId() != null) {
+            taskJson.put("parent", task.getParentId());
+        }
+        String[] dependsOn = task.getDependsOn();
+        if (dependsOn.length > 0) {
+            taskJson.put("dependsOn", new JSONArray(dependsOn));
+        }
+        if (task.isDeleted()) {
+            taskJson.put("deleted", true);
+        }
+        return taskJson;
+    }
+
+    /**
+     * Creates a task from its JSON representation in the tasks file.
+     *
+     * @param taskJson The JSON object of the task.
+     * @return The task.
+     * @throws IllegalArgumentException if a field has an invalid value.
+     * @throws org.json.JSONException if a field is missing.
+     */
+    static Task fromJson(JSONObject taskJson) {
+        Task task = new Task(
+                taskJson.getString("id"),
+                taskJson.getString("description"),
+                taskJson.getString("status"),
+                taskJson.getString("createdAt"),
+                taskJson.getString("updatedAt"),
+                taskJson.optBoolean("deleted", false)
+        );
+        task.setParentId(taskJson.optString("parent", null));
+        JSONArray dependsOn = taskJson.optJSONArray("dependsOn");
+        if (dependsOn != null) {
+            for (int i = 0; i < dependsOn.length(); i++) {
+                task.addDependency(dependsOn.getString(i));
+            }
+        }
+        return task;
+    }
+
+    /**
+     * Returns copies of the given tasks, so callers cannot change the cached tasks without
+     * going through this class.
+     *
+     * @param tasks The tasks to copy.
+     * @return A new list of copies.
+     */
+    private static List<Task> copies(List<Task> tasks) {
+        List<Task> copies = new ArrayList<>(tasks.size());
+        for (Task task : tasks) {
+            copies.add(new Task(task));
+        }
+        return copies;
+    }
+
+    /**
+     * Returns the tasks that are not tombstones.
+     *
+     * @param tasks The tasks to filter.
+     * @return A new list of the tasks that are not deleted.
+     */
+    private static List<Task> liveTasks(List<Task> tasks) {
+        List<Task> live = new ArrayList<>(tasks.size());
+        for (Task task : tasks) {
+            if (!task.isDeleted()) {
+                live.add(task);
+            }
+        }
+        return live;
+    }
+
+    /**
+     * Loads the tasks from the archive file.
+     * <p>
+     * The archive is a gzip stream of one JSON task per line. Each compaction appends a new
+     * gzip member, which {@link GZIPInputStream} reads as one continuous stream.
+     * </p>
+     *
+     * @return The archived tasks. Returns an empty list if there is no archive or it cannot be read.
+     */
+    List<Task> loadArchivedTasks() {
+        List<Task> tasks = new ArrayList<>();
+        if (!Files.exists(archivePath)) {
+            return tasks;
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(archivePath)), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.trim().isEmpty()) {
+                    tasks.add(fromJson(new JSONObject(line)));
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("Error loading archived tasks: " + e.getMessage());
+            e.printStackTrace();
+        }
+        return tasks;
+    }
+
+    /**
+     * Appends tasks to the archive file as a new gzip member.
+     *
+     * @param tasks The tasks to archive. Nothing is written if the list is empty.
+     * @throws RuntimeException if an IOException occurs while writing to the archive.
+     */
+    private void appendToArchive(List<Task> tasks) {
+        if (tasks.isEmpty()) {
+            return;
+        }
+        try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(
+                Files.newOutputStream(archivePath, StandardOpenOption.CREATE, StandardOpenOption.APPEND)),
+                StandardCharsets.UTF_8))) {
+            for (Task task : tasks) {
+                writer.write(toJson(task).toString());
+                writer.newLine();
+            }
         } catch (IOException e) {
-            throw new RuntimeException("Error writing tasks to file: " + e.getMessage(), e); // Re-throw as RuntimeException.
+            throw new RuntimeException("Error writing archived tasks: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Reads the attributes of the tasks file used to validate the cache.
+     *
+     * @return The file attributes, or {@code null} if they cannot be read.
+     */
+    private BasicFileAttributes readAttributes() {
+        try {
+            return Files.readAttributes(tasksPath, BasicFileAttributes.class);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Checks whether there are cached tasks that still match the tasks file.
+     *
+     * @return {@code true} if the cache can be used without reading the file.
+     */
+    private boolean hasValidCache() {
+        return cachedTasks != null && isCacheValid(readAttributes());
+    }
+
+    /**
+     * Checks whether the cached tasks still match the tasks file.
+     *
+     * @param attributes The current attributes of the tasks file, or {@code null} if unknown.
+     * @return {@code true} if the file has not changed since the cache was filled.
+     */
+    private boolean isCacheValid(BasicFileAttributes attributes) {
+        if (attributes == null
+                || attributes.size() != cachedSize
+                || !attributes.lastModifiedTime().equals(cachedModifiedTime)
+                || !Objects.equals(attributes.fileKey(), cachedFileKey)) {
+            return false;
+        }
+        if (!isRacy(cachedModifiedTime, cacheVerifiedAt)) {
+            return true;
+        }
+        // A rewrite within the same timestamp tick would leave the attributes unchanged.
+        long verifiedAt = System.currentTimeMillis();
+        try {
+            if (cachedChecksum == NO_CHECKSUM || checksum(tasksPath) != cachedChecksum) {
+                return false;
+            }
+        } catch (IOException e) {
+            return false;
+        }
+        cacheVerifiedAt = verifiedAt; // Later writes get a later timestamp, so stop checking
+        return true;
+    }
+
+    /**
+     * Checks whether a file modified at the given time may still be rewritten without its
+     * modification time changing, as seen from the given time.
+     *
+     * @param modifiedTime The modification time of the file.
+     * @param seenAt       When the file contents were read or written, in epoch milliseconds.
+     * @return {@code true} if the attributes alone cannot tell whether the file changed since.
+     */
+    private static boolean isRacy(FileTime modifiedTime, long seenAt) {
+        return seenAt - modifiedTime.toMillis() <= RACY_WINDOW_MILLIS;
+    }
+
+    /**
+     * Computes the CRC-32 of file contents held in memory.
+     *
+     * @param bytes The contents.
+     * @return The checksum.
+     */
+    private static long checksum(byte[] bytes) {
+        CRC32 checksum = new CRC32();
+        checksum.update(bytes);
+        return checksum.getValue();
+    }
+
+    /**
+     * Computes the CRC-32 of a file, reading it in chunks.
+     *
+     * @param path The file.
+     * @return The checksum of its current contents.
+     * @throws IOException if the file cannot be read.
+     */
+    private static long checksum(Path path) throws IOException {
+        CRC32 checksum = new CRC32();
+        try (InputStream in = Files.newInputStream(path)) {
+            byte[] buffer = new byte[64 * 1024];
+            for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+                checksum.update(buffer, 0, n);
+            }
+        }
+        return checksum.getValue();
+    }
+
+    /**
+     * Replaces the cached tasks and records the file attributes and contents they correspond to.
+     * If the attributes are unknown, the cache is dropped instead.
+     *
+     * @param tasks      The tasks matching the current file contents.
+     * @param attributes The attributes of the tasks file, or {@code null} if unknown.
+     * @param checksum   The CRC-32 of the file contents the tasks match, or {@link #NO_CHECKSUM}
+     *                   if it was not needed because the file was not racy.
+     * @param seenAt     When the contents were read or written, in epoch milliseconds.
+     */
+    private void updateCache(List<Task> tasks, BasicFileAttributes attributes, long checksum, long seenAt) {
+        if (attributes == null) {
+            invalidateCache();
+            return;
+        }
+        if (tasks != cachedTasks) {
+            searchEngine = null;
+            tasksReplaced();
+        }
+        cachedTasks = tasks;
+        if (dependencyGraph != null && !dependencyGraph.isBuiltFrom(tasks)) {
+            dependencyGraph = null;
+        }
+        cachedSize = attributes.size();
+        cachedModifiedTime = attributes.lastModifiedTime();
+        cachedFileKey = attributes.fileKey();
+        cachedChecksum = checksum;
+        cacheVerifiedAt = seenAt;
+    }
+
+    /**
+     * Drops the cached tasks so the next access re-reads the file.
+     */
+    private void invalidateCache() {
+        if (cachedTasks != null) {
+            tasksReplaced();
         }
+        cachedTasks = null;
+        searchEngine = null;
+        dependencyGraph = null;
+        cachedSize = -1;
+        cachedModifiedTime = null;
+        cachedFileKey = null;
+        cachedChecksum = NO_CHECKSUM;
+    }
+
+    /**
+     * Returns the dependency graph of the given tasks, building it if it is missing or was
+     * built from a different list.
+     *
+     * @param tasks The current tasks.
+     */
+    private DependencyGraph dependencyGraph(List<Task> tasks) {
+        if (dependencyGraph == null || !dependencyGraph.isBuiltFrom(tasks)) {
+            dependencyGraph = new DependencyGraph(tasks);
+        }
+        return dependencyGraph;
+    }
+
+    /**
+     * Returns the dependency graph if it has been built for the given tasks and must be kept up
+     * to date, or {@code null} if it will be built from scratch on next use anyway.
+     *
+     * @param tasks The tasks being modified.
+     */
+    private DependencyGraph maintainedGraph(List<Task> tasks) {
+        return dependencyGraph != null && dependencyGraph.isBuiltFrom(tasks) ? dependencyGraph : null;
+    }
+
+    private void statusChanged(List<Task> tasks, Task task, Status oldStatus) {
+        DependencyGraph graph = maintainedGraph(tasks);
+        if (graph != null) {
+            graph.statusChanged(task, oldStatus);
+        }
+    }
+
+    private static Task findLiveTask(List<Task> tasks, String id) {
+        for (Task task : tasks) {
+            if (!task.isDeleted() && task.hasId(id)) {
+                return task;
+            }
+        }
+        return null;
     }
 
     /**
      * Adds a new task to the task list and saves it to the file.
      *
      * @param task The {@link Task} object to add.  Must not be null.
-     * @throws IllegalArgumentException if task is null.
+     * @throws IllegalArgumentException if task is null, or if its parent task does not exist.
      */
     public void addTask(Task task) {
         if (task == null) {
             throw new IllegalArgumentException("Task cannot be null.");
         }
         List<Task> tasks = loadTasks();
+        if (task.getParentId() != null && findLiveTask(tasks, task.getParentId()) == null) {
+            throw new IllegalArgumentException("Parent task id: " + task.getParentId() + " not found");
+        }
         tasks.add(task);
-        writeTasks(tasks);
+        DependencyGraph graph = maintainedGraph(tasks);
+        if (graph != null) {
+            graph.taskAdded(task);
+        }
+        TaskHistory.Change change = new TaskHistory.Change();
+        change.add(task, "created", null, task.getDescription());
+        writeTasks(tasks, change);
     }
 
     /**
@@ -135,9 +673,10 @@ public class TaskManager {
      *
      * @param id          The ID of the task to update. Must not be null or empty.
      * @param description The new description for the task.  Must not be null or empty.
+     * @return {@code true} if the task was found and updated, {@code false} otherwise.
      * @throws IllegalArgumentException if id or description is null or empty.
      */
-    public void updateTaskDescp(String id, String description) {
+    public boolean updateTaskDescp(String id, String description) {
         if (id == null || id.trim().isEmpty()) {
             throw new IllegalArgumentException("Task ID cannot be null or empty.");
         }
@@ -147,14 +686,17 @@ public class TaskManager {
 
         List<Task> tasks = loadTasks();
         for (Task task : tasks) {
-            if (task.getId().equals(id)) {
+            if (!task.isDeleted() && task.hasId(id)) {
+                TaskHistory.Change change = new TaskHistory.Change();
+                change.add(task, "description", task.getDescription(), description);
                 task.setDescription(description);
-                writeTasks(tasks);
-                System.out.println("Task description updated successfully (ID: " + id + ")");
-                return;
+                writeTasks(tasks, change);
+                report("Task description updated successfully (ID: " + id + ")");
+                return true;
             }
         }
-        System.out.println("Task id: " + id + " not found");
+        report("Task id: " + id + " not found");
+        return false;
     }
 
     /**
@@ -163,23 +705,29 @@ public class TaskManager {
      * @param id     The ID of the task to update. Must not be null or empty.
      * @param status The new status for the task.  Must be a valid status string
      *               (e.g., "TODO", "IN_PROGRESS", "DONE").
+     * @return {@code true} if the task was found and updated, {@code false} otherwise.
      * @throws IllegalArgumentException if id is null or empty, or if the status is invalid.
      * @see Status#validateStatus(String)
      */
-    public void updateTaskStatus(String id, String status) throws IllegalArgumentException {
+    public boolean updateTaskStatus(String id, String status) throws IllegalArgumentException {
         if (id == null || id.trim().isEmpty()) {
             throw new IllegalArgumentException("Task ID cannot be null or empty.");
         }
         List<Task> tasks = loadTasks();
         for (Task task : tasks) {
-            if (task.getId().equals(id)) {
+            if (!task.isDeleted() && task.hasId(id)) {
+                Status oldStatus = task.getStatusValue();
                 task.setStatus(status);
-                writeTasks(tasks);
-                System.out.println("Task status updated successfully (ID: " + id + ")");
-                return;
+                statusChanged(tasks, task, oldStatus);
+                TaskHistory.Change change = new TaskHistory.Change();
+                change.add(task, "status", oldStatus.toString(), task.getStatus());
+                writeTasks(tasks, change);
+                report("Task status updated successfully (ID: " + id + ")");
+                return true;
             }
         }
-        System.out.println("Task id: " + id + " not found");
+        report("Task id: " + id + " not found");
+        return false;
     }
 
     /**
@@ -189,47 +737,67 @@ public class TaskManager {
      * @param description The new description for the task. Must not be null or empty.
      * @param status      The new status for the task. Must be a valid status string
      *               (e.g., "TODO", "IN_PROGRESS", "DONE").
+     * @return {@code true} if the task was found and updated, {@code false} otherwise.
      * @throws IllegalArgumentException if id or description is null or empty, or if the status is invalid.
      * @see Status#validateStatus(String)
      */
-    public void updateTaskDecpStatus(String id, String description, String status) throws IllegalArgumentException {
+    public boolean updateTaskDecpStatus(String id, String description, String status) throws IllegalArgumentException {
         if (id == null || id.trim().isEmpty()) {
             throw new IllegalArgumentException("Task ID cannot be null or empty.");
         }
         if (description == null || description.trim().isEmpty()) {
             throw new IllegalArgumentException("Description cannot be null or empty.");
         }
+        String newStatus = Status.validateStatus(status).toString();
 
         List<Task> tasks = loadTasks();
         for (Task task : tasks) {
-            if (task.getId().equals(id)) {
+            if (!task.isDeleted() && task.hasId(id)) {
+                TaskHistory.Change change = new TaskHistory.Change();
+                change.add(task, "description", task.getDescription(), description);
+                change.add(task, "status", task.getStatus(), newStatus);
+                Status oldStatus = task.getStatusValue();
                 task.setDescription(description);
-                task.setStatus(status);
-                writeTasks(tasks);
-                System.out.println("Task description and status updated successfully (ID: " + id + ")");
-                return;
+                task.setStatus(newStatus);
+                statusChanged(tasks, task, oldStatus);
+                writeTasks(tasks, change);
+                report("Task description and status updated successfully (ID: " + id + ")");
+                return true;
             }
         }
-        System.out.println("Task id: " + id + " not found");
+        report("Task id: " + id + " not found");
+        return false;
     }
 
     /**
      * Deletes a task with the given ID.
+     * The task is kept as a tombstone until the next {@link #compact(Duration) compaction}.
      *
      * @param id The ID of the task to delete. Must not be null or empty.
+     * @return {@code true} if the task was found and deleted, {@code false} otherwise.
      * @throws IllegalArgumentException if id is null or empty.
      */
-    public void deleteTask(String id) {
+    public boolean deleteTask(String id) {
         if (id == null || id.trim().isEmpty()) {
             throw new IllegalArgumentException("Task ID cannot be null or empty.");
         }
         List<Task> tasks = loadTasks();
-        if (tasks.removeIf(task -> task.getId().equals(id))) {
-            writeTasks(tasks);
-            System.out.println("Task deleted successfully (ID: " + id + ")");
-        } else {
-            System.out.println("Task id: " + id + " not found");
+        for (Task task : tasks) {
+            if (!task.isDeleted() && task.hasId(id)) {
+                task.setDeleted(true);
+                DependencyGraph graph = maintainedGraph(tasks);
+                if (graph != null) {
+                    graph.taskDeleted(task);
+                }
+                TaskHistory.Change change = new TaskHistory.Change();
+                change.add(task, "deleted", "false", "true");
+                writeTasks(tasks, change);
+                report("Task deleted successfully (ID: " + id + ")");
+                return true;
+            }
         }
+        report("Task id: " + id + " not found");
+        return false;
     }
 
     /**
@@ -237,30 +805,528 @@ public class TaskManager {
      *
      * @param id     The ID of the task to mark as done. Must not be null or empty.
      * @param status The {@link Status} to set for the task.
+     * @return {@code true} if the task was found and updated, {@code false} otherwise.
      * @throws IllegalArgumentException if id is null or empty.
      */
-    public void markTaskAs(String id, Status status) {
+    public boolean markTaskAs(String id, Status status) {
         if (id == null || id.trim().isEmpty()) {
             throw new IllegalArgumentException("Task ID cannot be null or empty.");
         }
         List<Task> tasks = loadTasks();
         for (Task task : tasks) {
-            if (task.getId().equals(id)) {
+            if (!task.isDeleted() && task.hasId(id)) {
+                TaskHistory.Change change = new TaskHistory.Change();
+                change.add(task, "status", task.getStatus(), status.toString());
+                Status oldStatus = task.getStatusValue();
                 task.setStatus(status.toString());
-                writeTasks(tasks);
-                System.out.println("Task marked as Done (ID: " + id + ")");
-                return;
+                statusChanged(tasks, task, oldStatus);
+                writeTasks(tasks, change);
+                report("Task marked as Done (ID: " + id + ")");
+                return true;
             }
         }
-        System.out.println("Task id: " + id + " not found");
+        report("Task id: " + id + " not found");
+        return false;
+    }
+
+    /**
+     * Makes a task depend on another task. The task is not ready until the other task is done.
+     *
+     * @param id          The ID of the dependent task. Must not be null or empty.
+     * @param dependsOnId The ID of the task it depends on. Must not be null or empty.
+     * @return {@code true} if the dependency was added, {@code false} if a task was not found
+     *         or the dependency already exists.
+     * @throws IllegalArgumentException if an ID is null or empty, if both IDs are the same, or if
+     *                                  the dependency would create a cycle.
+     */
+    public boolean addDependency(String id, String dependsOnId) {
+        if (id == null || id.trim().isEmpty() || dependsOnId == null || dependsOnId.trim().isEmpty()) {
+            throw new IllegalArgumentException("Task ID cannot be null or empty.");
+        }
+        if (id.equals(dependsOnId)) {
+            throw new IllegalArgumentException("A task cannot depend on itself.");
+        }
+        List<Task> tasks = loadTasks();
+        Task task = findLiveTask(tasks, id);
+        Task blocker = findLiveTask(tasks, dependsOnId);
+        if (task == null || blocker == null) {
+            report("Task id: " + (task == null ? id : dependsOnId) + " not found");
+            return false;
+        }
+        if (task.dependsOn(dependsOnId)) {
+            report("Task " + id + " already depends on " + dependsOnId);
+            return false;
+        }
+        DependencyGraph graph = dependencyGraph(tasks);
+        if (graph.wouldCreateCycle(id, dependsOnId)) {
+            throw new IllegalArgumentException("Task " + dependsOnId + " already depends on " + id + ".");
+        }
+        task.addDependency(dependsOnId);
+        graph.dependencyAdded(task, dependsOnId);
+        TaskHistory.Change change = new TaskHistory.Change();
+        change.add(task, "dependency", null, dependsOnId);
+        writeTasks(tasks, change);
+        report("Task " + id + " now depends on " + dependsOnId);
+        return true;
     }
 
     /**
-     * Lists all tasks.
+     * Removes the dependency of a task on another task.
      *
-     * @return A list of all {@link Task} objects.  Returns an empty list if no tasks exist.
+     * @param id          The ID of the dependent task. Must not be null or empty.
+     * @param dependsOnId The ID of the task it depends on. Must not be null or empty.
+     * @return {@code true} if the dependency was removed, {@code false} if the task was not found
+     *         or had no such dependency.
+     * @throws IllegalArgumentException if an ID is null or empty.
+     */
+    public boolean removeDependency(String id, String dependsOnId) {
+        if (id == null || id.trim().isEmpty() || dependsOnId == null || dependsOnId.trim().isEmpty()) {
+            throw new IllegalArgumentException("Task ID cannot be null or empty.");
+        }
+        List<Task> tasks = loadTasks();
+        Task task = findLiveTask(tasks, id);
+        if (task == null || !task.dependsOn(dependsOnId)) {
+            report(task == null ? "Task id: " + id + " not found" : "Task " + id + " does not depend on " + dependsOnId);
+            return false;
+        }
+        task.removeDependency(dependsOnId);
+        DependencyGraph graph = maintainedGraph(tasks);
+        if (graph != null) {
+            graph.dependencyRemoved(task, dependsOnId);
+        }
+        TaskHistory.Change change = new TaskHistory.Change();
+        change.add(task, "dependency", dependsOnId, null);
+        writeTasks(tasks, change);
+        report("Task " + id + " no longer depends on " + dependsOnId);
+        return true;
+    }
+
+    /**
+     * Lists the tasks that are ready to be worked on: tasks that are not done and whose
+     * dependencies and subtasks are all done or deleted.
+     *
+     * @return A new list of the ready {@link Task} objects, in no particular order.
+     */
+    public List<Task> listReadyTasks() {
+        return copies(dependencyGraph(loadTasks()).readyTasks());
+    }
+
+    /**
+     * Lists the IDs of the tasks that are ready to be worked on, without copying the tasks.
+     *
+     * @return A new list of the IDs, in no particular order.
+     * @see #listReadyTasks()
+     */
+    List<String> listReadyTaskIds() {
+        return dependencyGraph(loadTasks()).readyIds();
+    }
+
+    /**
+     * Lists all tasks that are not deleted or archived.
+     *
+     * @return A new list of all {@link Task} objects.  Returns an empty list if no tasks exist.
      */
     public List<Task> listTasks() {
-        return loadTasks();
+        return copies(liveTasks(loadTasks()));
+    }
+
+    /**
+     * Lists the tasks with the given status that are not deleted or archived.
+     *
+     * @param status The status to filter by. Must not be null.
+     * @return A new list of the matching {@link Task} objects.
+     * @throws IllegalArgumentException if status is null.
+     */
+    public List<Task> listTasks(Status status) {
+        if (status == null) {
+            throw new IllegalArgumentException("Status cannot be null.");
+        }
+        if (blockLayout && !hasValidCache()) {
+            try {
+                return BlockTaskStore.readByStatus(tasksPath, status);
+            } catch (IOException e) {
+                System.err.println("Error loading tasks: " + e.getMessage());
+                return new ArrayList<>();
+            }
+        }
+        List<Task> tasks = new ArrayList<>();
+        for (Task task : loadTasks()) {
+            if (!task.isDeleted() && task.getStatusValue() == status) {
+                tasks.add(new Task(task));
+            }
+        }
+        return tasks;
+    }
+
+    /**
+     * Lists all tasks that are not deleted, optionally including archived tasks.
+     *
+     * @param includeArchived {@code true} to also read the archive file.
+     * @return A new list of {@link Task} objects, with archived tasks after the others.
+     */
+    public List<Task> listTasks(boolean includeArchived) {
+        List<Task> tasks = listTasks();
+        if (includeArchived) {
+            Set<String> ids = new HashSet<>();
+            for (Task task : tasks) {
+                ids.add(task.getId());
+            }
+            for (Task task : loadArchivedTasks()) {
+                // A task can be in both files if compaction was interrupted; the tasks file wins.
+                if (ids.add(task.getId())) {
+                    tasks.add(task);
+                }
+            }
+        }
+        return tasks;
+    }
+
+    /**
+     * Removes tombstones from the tasks file and moves {@code DONE} tasks that have not been
+     * updated for the given age to the archive file.
+     * <p>
+     * Archived tasks are appended to the archive before the tasks file is rewritten, so an
+     * interrupted compaction never loses tasks.
+     * </p>
+     *
+     * @param archiveAfter The minimum time since the last update for a {@code DONE} task to be archived.
+     *                     Must not be null or negative.
+     * @return The number of tasks removed from the tasks file.
+     * @throws IllegalArgumentException if archiveAfter is null or negative.
+     * @throws RuntimeException if an IOException occurs while writing the archive or the tasks file.
+     */
+    public int compact(Duration archiveAfter) {
+        if (archiveAfter == null || archiveAfter.isNegative()) {
+            throw new IllegalArgumentException("Archive age cannot be null or negative.");
+        }
+        long cutoff = Task.getCurrentTime() - archiveAfter.getSeconds();
+        Predicate<Task> archivable = task -> task.getStatusValue() == Status.DONE && task.getUpdatedAtEpoch() <= cutoff;
+        List<Task> tasks = loadTasks();
+        List<Task> archived = new ArrayList<>();
+        int tombstones = 0;
+        for (Task task : tasks) {
+            if (task.isDeleted()) {
+                tombstones++;
+            } else if (archivable.test(task)) {
+                archived.add(task);
+            }
+        }
+        if (tombstones == 0 && archived.isEmpty()) {
+            report("Nothing to compact");
+            return 0;
+        }
+        appendToArchive(archived);
+        tasks.removeIf(task -> task.isDeleted() || archivable.test(task));
+        dependencyGraph = null;
+        searchEngine = null;
+        tasksReplaced();
+        writeTasks(tasks);
+        report("Compacted tasks: " + tombstones + " tombstones removed, " + archived.size() + " tasks archived");
+        return tombstones + archived.size();
+    }
+
+    /**
+     * Searches task descriptions for a keyword and returns the best {@code k} matches.
+     * <p>
+     * The search index is built when the tasks are loaded and kept up to date by the
+     * mutations, which re-index only the tasks they change.
+     * </p>
+     *
+     * @param keyword The keyword to search for. Must not be null or empty.
+     * @param k       The maximum number of matches to return. Must not be negative.
+     * @return The ranked matches, best match first.
+     * @throws IllegalArgumentException if the keyword is null or empty, or if k is negative.
+     * @see TaskSearchEngine#search(String, int)
+     */
+    public List<TaskMatch> searchTasks(String keyword, int k) {
+        List<Task> tasks = loadTasks();
+        if (searchEngine == null || tasks != cachedTasks) {
+            searchEngine = new TaskSearchEngine(liveTasks(tasks));
+        }
+        List<TaskMatch> matches = new ArrayList<>();
+        for (TaskMatch match : searchEngine.search(keyword, k)) {
+            matches.add(new TaskMatch(new Task(match.getTask()), match.getDistance(), match.isSubstringMatch(),
+                    match.getMatchedTokens(), match.getTokenDistances()));
+        }
+        return matches;
+    }
+
+    /**
+     * Searches task descriptions for a keyword, optionally including archived tasks.
+     * Searches that include archived tasks build a one-off index.
+     *
+     * @param keyword         The keyword to search for. Must not be null or empty.
+     * @param k               The maximum number of matches to return. Must not be negative.
+     * @param includeArchived {@code true} to also search the archive file.
+     * @return The ranked matches, best match first.
+     * @throws IllegalArgumentException if the keyword is null or empty, or if k is negative.
+     */
+    public List<TaskMatch> searchTasks(String keyword, int k, boolean includeArchived) {
+        if (!includeArchived) {
+            return searchTasks(keyword, k);
+        }
+        return new TaskSearchEngine(listTasks(true)).search(keyword, k);
+    }
+
+    /**
+     * Finds the task with the given ID.
+     *
+     * @param id The ID of the task to find. Must not be null or empty.
+     * @return A copy of the task, or {@code null} if no task has the given ID.
+     * @throws IllegalArgumentException if id is null or empty.
+     */
+    public Task findTask(String id) {
+        if (id == null || id.trim().isEmpty()) {
+            throw new IllegalArgumentException("Task ID cannot be null or empty.");
+        }
+        if (blockLayout && !hasValidCache()) {
+            try {
+                Task task = BlockTaskStore.find(tasksPath, id);
+                return task == null || task.isDeleted() ? null : task;
+            } catch (IOException e) {
+                System.err.println("Error finding task: " + e.getMessage());
+                return null;
+            }
+        }
+        for (Task task : loadTasks()) {
+            if (!task.isDeleted() && task.hasId(id)) {
+                return new Task(task);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets the recorded changes of the task with the given ID, oldest first.
+     *
+     * @param id The ID of the task. Must not be null or empty.
+     * @return The events of the task. Returns an empty list if none were recorded or the history cannot be read.
+     * @throws IllegalArgumentException if id is null or empty.
+     */
+    public List<TaskEvent> getHistory(String id) {
+        if (id == null || id.trim().isEmpty()) {
+            throw new IllegalArgumentException("Task ID cannot be null or empty.");
+        }
+        try {
+            return history.history(id);
+        } catch (IOException e) {
+            System.err.println("Error reading task history: " + e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Lists the tasks as they were at the given time, rebuilt from the nearest earlier
+     * checkpoint of the history.
+     *
+     * @param timestamp The point in time, in the format "yyyy-MM-dd HH:mm:ss".
+     * @return The tasks that existed and were not deleted at that time.  Returns an empty list
+     * for times before the history began or if the history cannot be read.
+     * @throws IllegalArgumentException if the timestamp is not in the expected format.
+     */
+    public List<Task> listTasksAsOf(String timestamp) {
+        long asOf = Task.parseTime(timestamp);
+        try {
+            return history.tasksAsOf(asOf);
+        } catch (IOException e) {
+            System.err.println("Error reading task history: " + e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Reverts the most recent change that has not been undone yet.
+     * <p>
+     * The revert is itself recorded in the history. Undoing again reverts the change before it.
+     * Reverting the creation of a task deletes it, and reverting a deletion restores the task,
+     * even if the tombstone has been compacted away. A change that can no longer be reverted,
+     * e.g. because its tasks have since been archived, is recorded as skipped and the change
+     * before it is reverted instead.
+     * </p>
+     *
+     * @return {@code true} if a change was reverted, {@code false} if there was nothing to undo.
+     * @throws RuntimeException if an IOException occurs while writing to the file.
+     */
+    public boolean undo() {
+        List<Task> tasks = loadTasks();
+        while (true) {
+            List<TaskEvent> events;
+            try {
+                events = history.lastUndoableChange();
+            } catch (IOException e) {
+                System.err.println("Error reading task history: " + e.getMessage());
+                return false;
+            }
+            if (events.isEmpty()) {
+                report("Nothing to undo");
+                return false;
+            }
+            long undone = events.get(0).getChange();
+            TaskHistory.Change change = new TaskHistory.Change(undone);
+            for (int i = events.size() - 1; i >= 0; i--) {
+                revert(tasks, events.get(i), change);
+            }
+            if (!change.isEmpty()) {
+                dependencyGraph = null;
+                writeTasks(tasks, change);
+                report("Change #" + undone + " undone");
+                return true;
+            }
+
+            // Record the skip so that this and later undos move past the change.
+            TaskHistory.Change skipped = new TaskHistory.Change(undone);
+            skipped.skip(events.get(0).getTaskId());
+            try {
+                history.append(Collections.singletonList(skipped));
+            } catch (IOException e) {
+                System.err.println("Error recording task history: " + e.getMessage());
+                return false;
+            }
+            report("Skipped change #" + undone + ": its tasks no longer exist");
+        }
+    }
+
+    /**
+     * Applies the inverse of one event to the tasks and records it in the given change.
+     *
+     * @param tasks  The tasks to modify.
+     * @param event  The event to revert.
+     * @param change The change recording the revert.
+     */
+    private void revert(List<Task> tasks, TaskEvent event, TaskHistory.Change change) {
+        Task task = null;
+        for (Task candidate : tasks) {
+            if (candidate.hasId(event.getTaskId())) {
+                task = candidate;
+                break;
+            }
+        }
+        switch (event.getField()) {
+            case "created":
+                if (task != null && !task.isDeleted()) {
+                    task.setDeleted(true);
+                    change.add(task, "deleted", "false", "true");
+                }
+                break;
+            case "deleted":
+                boolean restore = Boolean.parseBoolean(event.getNewValue());
+                if (task == null && restore && event.getTaskJson() != null) {
+                    task = fromJson(new JSONObject(event.getTaskJson()));
+                    tasks.add(task); // The tombstone was compacted away
+                }
+                if (task != null && task.isDeleted() == restore) {
+                    task.setDeleted(!restore);
+                    change.add(task, "deleted", String.valueOf(restore), String.valueOf(!restore));
+                }
+                break;
+            case "description":
+                if (task != null && !task.isDeleted()) {
+                    change.add(task, "description", task.getDescription(), event.getOldValue());
+                    task.setDescription(event.getOldValue());
+                }
+                break;
+            case "status":
+                if (task != null && !task.isDeleted()) {
+                    change.add(task, "status", task.getStatus(), event.getOldValue());
+                    task.setStatus(event.getOldValue());
+                }
+                break;
+            case "dependency":
+                if (task != null && !task.isDeleted()) {
+                    if (event.getNewValue() != null && task.removeDependency(event.getNewValue())) {
+                        change.add(task, "dependency", event.getNewValue(), null);
+                    } else if (event.getOldValue() != null && task.addDependency(event.getOldValue())) {
+                        change.add(task, "dependency", null, event.getOldValue());
+                    }
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Runs several mutations and writes the tasks file once at the end instead of after each one.
+     * <p>
+     * Mutations that completed before an exception are still written. Batches may be nested;
+     * the file is written when the outermost batch ends. The caller must be the only writer
+     * of the tasks file while the batch runs.
+     * </p>
+     *
+     * @param mutations The mutations to run. Must not be null.
+     * @throws IllegalArgumentException if mutations is null.
+     * @throws RuntimeException if an IOException occurs while writing to the file.
+     */
+    public void runBatch(Runnable mutations) {
+        if (mutations == null) {
+            throw new IllegalArgumentException("Mutations cannot be null.");
+        }
+        batchDepth++;
+        try {
+            mutations.run();
+        } finally {
+            batchDepth--;
+            if (batchDepth == 0 && pendingWrite != null) {
+                List<Task> tasks = pendingWrite;
+                pendingWrite = null;
+                writeTasks(tasks);
+            }
+        }
+    }
+
+    /**
+     * Sets whether result messages of mutations are printed to standard output.
+     * Messages are printed by default.
+     *
+     * @param verbose {@code true} to print result messages, {@code false} to suppress them.
+     */
+    public void setVerbose(boolean verbose) {
+        this.verbose = verbose;
+    }
+
+    /**
+     * Sets the listener that is told about the tasks each mutation changes.
+     *
+     * @param listener The listener, or {@code null} for none.
+     */
+    void setChangeListener(ChangeListener listener) {
+        this.changeListener = listener;
+    }
+
+    private void tasksReplaced() {
+        if (changeListener != null) {
+            changeListener.tasksReplaced();
+        }
+    }
+
+    /**
+     * Prints a result message if this TaskManager is verbose.
+     *
+     * @param message The message to print.
+     */
+    private void report(String message) {
+        if (verbose) {
+            System.out.println(message);
+        }
+    }
+
+    /**
+     * Receives the tasks changed by each mutation, so that state derived from the tasks can be
+     * kept up to date without copying all of them after every write.
+     */
+    interface ChangeListener {
+        /**
+         * Called when a mutation changed some tasks, before they are written. Inside a batch,
+         * the tasks may change again before the batch ends.
+         *
+         * @param tasks The changed tasks themselves, including tasks that were deleted.
+         */
+        void tasksChanged(Collection<Task> tasks);
+
+        /**
+         * Called when the tasks were reloaded, compacted or could not be read or written, so
+         * that all state derived from them has to be rebuilt.
+         */
+        void tasksReplaced();
     }
-}
\ No newline at end of file
+}
@@ -1,15 +1,34 @@
 package com.tasktracker;
 
 /**
- * A simple data class to hold a Task and its Levenshtein distance to a search keyword.
+ * A simple data class to hold a Task and its search score for a keyword.
+ * <p>
+ * The score ({@link #getDistance()}) is 0 when the description contains the whole keyword.
+ * Otherwise it is the sum, over the keyword's tokens, of the edit distance to the closest
+ * token in the description. The per-token breakdown is available through
+ * {@link #getMatchedTokens()} and {@link #getTokenDistances()}.
+ * </p>
  */
 public class TaskMatch {
+    private static final String[] NO_TOKENS = new String[0];
+    private static final int[] NO_DISTANCES = new int[0];
+
     private final Task task;
     private final int distance;
+    private final boolean substringMatch;
+    private final String[] matchedTokens;
+    private final int[] tokenDistances;
 
     public TaskMatch(Task task, int distance) {
+        this(task, distance, distance == 0, NO_TOKENS, NO_DISTANCES);
+    }
+
+    public TaskMatch(Task task, int distance, boolean substringMatch, String[] matchedTokens, int[] tokenDistances) {
         this.task = task;
         this.distance = distance;
+        this.substringMatch = substringMatch;
+        this.matchedTokens = matchedTokens;
+        this.tokenDistances = tokenDistances;
     }
 
     public Task getTask() {
@@ -19,4 +38,26 @@ public class TaskMatch {
     public int getDistance() {
         return distance;
     }
-}
\ No newline at end of file
+
+    /**
+     * @return {@code true} if the description contains the whole keyword.
+     */
+    public boolean isSubstringMatch() {
+        return substringMatch;
+    }
+
+    /**
+     * @return For each keyword token, the closest description token. Empty for substring matches.
+     */
+    public String[] getMatchedTokens() {
+        return matchedTokens.clone();
+    }
+
+    /**
+     * @return For each keyword token, the edit distance to its closest description token.
+     * Empty for substring matches.
+     */
+    public int[] getTokenDistances() {
+        return tokenDistances.clone();
+    }
+}
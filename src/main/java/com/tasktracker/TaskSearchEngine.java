@@ -0,0 +1,533 @@
+package com.tasktracker;
+
+import org.apache.commons.text.similarity.LevenshteinDistance;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Ranks tasks by how closely their description matches a search keyword.
+ * <p>
+ * Descriptions are normalized (lower-cased) and split into tokens once, when a task is
+ * indexed, so a query only has to normalize the keyword. A description that contains the whole
+ * keyword scores 0. Otherwise each keyword token is compared with every description token and
+ * the smallest edit distance counts; the task's score is the sum of these per-token distances.
+ * Scoring per token keeps long descriptions from being penalized for their length.
+ * </p>
+ * <p>
+ * Edit distances for keyword tokens of up to 64 characters are computed with Myers'
+ * bit-parallel algorithm. Longer tokens fall back to {@link LevenshteinDistance}.
+ * </p>
+ * <p>
+ * The index is kept up to date task by task with {@link #put(Task)} and {@link #remove(String)},
+ * which only normalize and tokenize the changed description, the same way
+ * {@link DependencyGraph} is maintained. Each task keeps the slot it was first indexed in, so
+ * ties are ranked in that order. Removed tasks leave an empty slot until more than half of the
+ * slots are empty, when the index is compacted. Slots are stored in fixed-size chunks so that
+ * {@link #snapshot() snapshots} can share them and only the chunks changed since are copied.
+ * </p>
+ */
+public class TaskSearchEngine {
+
+    private static final int MAX_BIT_PARALLEL_LENGTH = Long.SIZE;
+    private static final int ASCII_SIZE = 128;
+    private static final int CHUNK_BITS = 10;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int MIN_EMPTY_SLOTS_TO_COMPACT = 16;
+
+    private final boolean readOnly;
+    private Entry[][] chunks;
+    private boolean[] sharedChunks;
+    private int slotCount;
+    private int emptySlots;
+    private Map<String, Integer> slots;
+
+    /**
+     * Builds a search index over the given tasks.
+     *
+     * @param tasks The tasks to index. Must not be null.
+     * @throws IllegalArgumentException if tasks is null.
+     */
+    public TaskSearchEngine(List<Task> tasks) {
+        if (tasks == null) {
+            throw new IllegalArgumentException("Tasks cannot be null.");
+        }
+        this.readOnly = false;
+        this.chunks = new Entry[chunkCount(tasks.size())][];
+        this.sharedChunks = new boolean[chunks.length];
+        for (Task task : tasks) {
+            setEntry(slotCount++, Entry.of(task));
+        }
+    }
+
+    private TaskSearchEngine(Entry[][] chunks, int slotCount, int emptySlots, Map<String, Integer> slots) {
+        this.readOnly = true;
+        this.chunks = chunks;
+        this.slotCount = slotCount;
+        this.emptySlots = emptySlots;
+        this.slots = slots;
+    }
+
+    /**
+     * @return The number of indexed tasks.
+     */
+    int size() {
+        return slotCount - emptySlots;
+    }
+
+    /**
+     * Returns a read-only copy of the index that later changes to this index don't affect.
+     * <p>
+     * The copy shares the index entries with this index, so taking it costs time proportional
+     * to the number of chunks of {@value #CHUNK_SIZE} slots rather than to the number of tasks.
+     * A shared chunk is copied the next time this index changes a slot in it. The copy may be
+     * read by other threads while this index keeps changing, provided it is published safely.
+     * </p>
+     *
+     * @return The copy.
+     */
+    TaskSearchEngine snapshot() {
+        Map<String, Integer> shared = slots();
+        Arrays.fill(sharedChunks, true);
+        return new TaskSearchEngine(Arrays.copyOf(chunks, chunks.length), slotCount, emptySlots, shared);
+    }
+
+    /**
+     * Finds an indexed task by ID.
+     *
+     * @param id The ID of the task.
+     * @return The task, or {@code null} if no task with the ID is indexed.
+     */
+    Task find(String id) {
+        Integer slot = slots().get(id);
+        if (slot == null || slot >= slotCount) {
+            return null; // Indexed after this snapshot was taken
+        }
+        Entry entry = entry(slot);
+        return entry == null ? null : entry.task;
+    }
+
+    /**
+     * Passes each indexed task to the action, in slot order.
+     *
+     * @param action The action.
+     */
+    void forEach(Consumer<Task> action) {
+        for (int i = 0; i < slotCount; i++) {
+            Entry entry = entry(i);
+            if (entry != null) {
+                action.accept(entry.task);
+            }
+        }
+    }
+
+    /**
+     * Indexes a new task, or re-indexes a task whose description or other fields changed.
+     * The description is only tokenized again if it changed.
+     *
+     * @param task The task, which replaces any indexed task with the same ID.
+     * @throws IllegalStateException if this index is a snapshot.
+     */
+    void put(Task task) {
+        checkWritable();
+        String id = task.getId();
+        Integer slot = slots().get(id);
+        if (slot == null) {
+            setEntry(slotCount, Entry.of(task));
+            slots.put(id, slotCount++);
+            return;
+        }
+        Entry old = entry(slot);
+        if (old == null) {
+            emptySlots--; // The task comes back in its old place
+        }
+        setEntry(slot, old == null ? Entry.of(task) : old.with(task));
+    }
+
+    /**
+     * Removes a task from the index.
+     *
+     * @param id The ID of the task.
+     * @throws IllegalStateException if this index is a snapshot.
+     */
+    void remove(String id) {
+        checkWritable();
+        Integer slot = slots().get(id);
+        if (slot == null || entry(slot) == null) {
+            return;
+        }
+        setEntry(slot, null);
+        emptySlots++;
+        if (emptySlots > MIN_EMPTY_SLOTS_TO_COMPACT && emptySlots * 2 > slotCount) {
+            compact();
+        }
+    }
+
+    private void checkWritable() {
+        if (readOnly) {
+            throw new IllegalStateException("A search index snapshot cannot be changed.");
+        }
+    }
+
+    private Entry entry(int slot) {
+        return chunks[slot >>> CHUNK_BITS][slot & (CHUNK_SIZE - 1)];
+    }
+
+    /**
+     * Stores an entry, copying its chunk first if a snapshot shares it.
+     */
+    private void setEntry(int slot, Entry entry) {
+        int chunk = slot >>> CHUNK_BITS;
+        if (chunk == chunks.length) {
+            chunks = Arrays.copyOf(chunks, Math.max(1, chunks.length * 2));
+            sharedChunks = Arrays.copyOf(sharedChunks, chunks.length);
+        }
+        if (chunks[chunk] == null) {
+            chunks[chunk] = new Entry[CHUNK_SIZE];
+        } else if (sharedChunks[chunk]) {
+            chunks[chunk] = chunks[chunk].clone();
+            sharedChunks[chunk] = false;
+        }
+        chunks[chunk][slot & (CHUNK_SIZE - 1)] = entry;
+    }
+
+    private static int chunkCount(int slots) {
+        return Math.max(1, (slots + CHUNK_SIZE - 1) >>> CHUNK_BITS);
+    }
+
+    /**
+     * Returns the slot of each indexed ID, building the map on first use so that indexes
+     * that are never changed don't pay for it. Snapshots share the map: slots are only ever
+     * added to it, and compaction starts a new one.
+     */
+    private Map<String, Integer> slots() {
+        if (slots == null) {
+            slots = new ConcurrentHashMap<>(slotCount * 2);
+            for (int i = 0; i < slotCount; i++) {
+                Entry entry = entry(i);
+                if (entry != null) {
+                    slots.put(entry.task.getId(), i);
+                }
+            }
+        }
+        return slots;
+    }
+
+    /**
+     * Moves the indexed tasks to the front, keeping their order.
+     */
+    private void compact() {
+        Entry[][] live = chunks;
+        int count = slotCount;
+        chunks = new Entry[chunkCount(size())][];
+        sharedChunks = new boolean[chunks.length];
+        slotCount = 0;
+        emptySlots = 0;
+        slots = null;
+        for (int i = 0; i < count; i++) {
+            Entry entry = live[i >>> CHUNK_BITS][i & (CHUNK_SIZE - 1)];
+            if (entry != null) {
+                setEntry(slotCount++, entry);
+            }
+        }
+    }
+
+    /**
+     * Returns the {@code k} tasks that best match the keyword, best match first.
+     * Tasks with equal scores keep their original order.
+     *
+     * @param keyword The keyword to search for. Must not be null or empty.
+     * @param k       The maximum number of matches to return. Must not be negative.
+     * @return The ranked matches, including the per-token score breakdown.
+     * @throws IllegalArgumentException if the keyword is null or empty, or if k is negative.
+     */
+    public List<TaskMatch> search(String keyword, int k) {
+        if (keyword == null || keyword.trim().isEmpty()) {
+            throw new IllegalArgumentException("Keyword cannot be null or empty.");
+        }
+        if (k < 0) {
+            throw new IllegalArgumentException("k cannot be negative.");
+        }
+        if (k == 0 || size() == 0) {
+            return new ArrayList<>();
+        }
+
+        String normalizedKeyword = normalize(keyword.trim());
+        String[] keywordTokens = tokenize(normalizedKeyword);
+        if (keywordTokens.length == 0) {
+            keywordTokens = new String[]{normalizedKeyword};
+        }
+        Pattern[] patterns = new Pattern[keywordTokens.length];
+        for (int i = 0; i < keywordTokens.length; i++) {
+            patterns[i] = new Pattern(keywordTokens[i]);
+        }
+
+        // Max-heap on (score, index) holding the best k candidates seen so far.
+        Comparator<Candidate> ranking = Comparator.comparingInt((Candidate c) -> c.match.getDistance())
+                .thenComparingInt(c -> c.index);
+        PriorityQueue<Candidate> best = new PriorityQueue<>(Math.min(k, size()) + 1, ranking.reversed());
+        for (int i = 0; i < slotCount; i++) {
+            Entry entry = entry(i);
+            if (entry == null) {
+                continue;
+            }
+            int bound = best.size() == k ? best.peek().match.getDistance() : Integer.MAX_VALUE;
+            TaskMatch match = score(entry, normalizedKeyword, patterns, bound);
+            if (match == null) {
+                continue;
+            }
+            best.add(new Candidate(i, match));
+            if (best.size() > k) {
+                best.poll();
+            }
+        }
+
+        List<Candidate> ranked = new ArrayList<>(best);
+        ranked.sort(ranking);
+        List<TaskMatch> matches = new ArrayList<>(ranked.size());
+        for (Candidate candidate : ranked) {
+            matches.add(candidate.match);
+        }
+        return matches;
+    }
+
+    /**
+     * Scores a single task against the keyword.
+     *
+     * @param entry             The index entry of the task to score.
+     * @param normalizedKeyword The normalized keyword.
+     * @param patterns          The precomputed patterns of the keyword tokens.
+     * @param bound             The score a task has to beat to be ranked.
+     * @return The match, or {@code null} if the score does not beat the bound.
+     */
+    private TaskMatch score(Entry entry, String normalizedKeyword, Pattern[] patterns, int bound) {
+        if (entry.normalized.contains(normalizedKeyword)) {
+            return new TaskMatch(entry.task, 0, true, new String[0], new int[0]);
+        }
+        String[] tokens = entry.tokens;
+        String[] matchedTokens = new String[patterns.length];
+        int[] tokenDistances = new int[patterns.length];
+        int total = 0;
+        for (int p = 0; p < patterns.length; p++) {
+            Pattern pattern = patterns[p];
+            int bestDistance = pattern.length();
+            String bestToken = "";
+            for (String token : tokens) {
+                // The distance is at least the difference in length, so skip tokens that cannot win.
+                if (Math.abs(token.length() - pattern.length()) >= bestDistance) {
+                    continue;
+                }
+                int distance = pattern.distance(token);
+                if (distance < bestDistance) {
+                    bestDistance = distance;
+                    bestToken = token;
+                    if (distance == 0) {
+                        break;
+                    }
+                }
+            }
+            matchedTokens[p] = bestToken;
+            tokenDistances[p] = bestDistance;
+            total += bestDistance;
+            if (total >= bound) {
+                return null; // Ties lose to the earlier tasks already ranked.
+            }
+        }
+        return new TaskMatch(entry.task, total, false, matchedTokens, tokenDistances);
+    }
+
+    /**
+     * Normalizes text for matching.
+     *
+     * @param text The text to normalize.
+     * @return The lower-cased text.
+     */
+    static String normalize(String text) {
+        return text.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Splits normalized text into tokens of letters and digits. The text is read by code point,
+     * so letters outside the Basic Multilingual Plane stay part of their token.
+     *
+     * @param normalized The normalized text.
+     * @return The tokens, in order of appearance.
+     */
+    static String[] tokenize(String normalized) {
+        List<String> tokens = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i < normalized.length(); ) {
+            int codePoint = normalized.codePointAt(i);
+            if (Character.isLetterOrDigit(codePoint)) {
+                if (start < 0) {
+                    start = i;
+                }
+            } else if (start >= 0) {
+                tokens.add(normalized.substring(start, i));
+                start = -1;
+            }
+            i += Character.charCount(codePoint);
+        }
+        if (start >= 0) {
+            tokens.add(normalized.substring(start));
+        }
+        return tokens.toArray(new String[0]);
+    }
+
+    /**
+     * Computes the edit distance between two strings, using the bit-parallel algorithm when the
+     * first string is short enough.
+     *
+     * @param pattern The first string.
+     * @param text    The second string.
+     * @return The Levenshtein distance between the strings.
+     */
+    static int editDistance(String pattern, String text) {
+        return new Pattern(pattern).distance(text);
+    }
+
+    /**
+     * A keyword token with its precomputed match masks for Myers' bit-parallel edit distance.
+     */
+    private static final class Pattern {
+        private final String token;
+        private final long[] asciiMasks;
+        private final char[] otherChars;
+        private final long[] otherMasks;
+
+        Pattern(String token) {
+            this.token = token;
+            if (token.length() > MAX_BIT_PARALLEL_LENGTH || token.isEmpty()) {
+                asciiMasks = null;
+                otherChars = null;
+                otherMasks = null;
+                return;
+            }
+            asciiMasks = new long[ASCII_SIZE];
+            char[] chars = new char[token.length()];
+            long[] masks = new long[token.length()];
+            int others = 0;
+            for (int i = 0; i < token.length(); i++) {
+                char c = token.charAt(i);
+                if (c < ASCII_SIZE) {
+                    asciiMasks[c] |= 1L << i;
+                    continue;
+                }
+                int slot = 0;
+                while (slot < others && chars[slot] != c) {
+                    slot++;
+                }
+                if (slot == others) {
+                    chars[others++] = c;
+                }
+                masks[slot] |= 1L << i;
+            }
+            otherChars = Arrays.copyOf(chars, others);
+            otherMasks = Arrays.copyOf(masks, others);
+        }
+
+        int length() {
+            return token.length();
+        }
+
+        /**
+         * Computes the Levenshtein distance between this token and the given text.
+         *
+         * @param text The text to compare with.
+         * @return The edit distance.
+         */
+        int distance(String text) {
+            if (token.isEmpty()) {
+                return text.length();
+            }
+            if (asciiMasks == null) {
+                return LevenshteinDistance.getDefaultInstance().apply(token, text);
+            }
+            int m = token.length();
+            long last = 1L << (m - 1);
+            long pv = m == Long.SIZE ? -1L : (1L << m) - 1;
+            long mv = 0;
+            int score = m;
+            for (int j = 0; j < text.length(); j++) {
+                long eq = mask(text.charAt(j));
+                long xv = eq | mv;
+                long xh = (((eq & pv) + pv) ^ pv) | eq;
+                long ph = mv | ~(xh | pv);
+                long mh = pv & xh;
+                if ((ph & last) != 0) {
+                    score++;
+                } else if ((mh & last) != 0) {
+                    score--;
+                }
+                ph = (ph << 1) | 1;
+                mh = mh << 1;
+                pv = mh | ~(xv | ph);
+                mv = ph & xv;
+            }
+            return score;
+        }
+
+        private long mask(char c) {
+            if (c < ASCII_SIZE) {
+                return asciiMasks[c];
+            }
+            for (int i = 0; i < otherChars.length; i++) {
+                if (otherChars[i] == c) {
+                    return otherMasks[i];
+                }
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * An indexed task with its normalized description and tokens.
+     */
+    private static final class Entry {
+        private final Task task;
+        private final String normalized;
+        private final String[] tokens;
+
+        private Entry(Task task, String normalized, String[] tokens) {
+            this.task = task;
+            this.normalized = normalized;
+            this.tokens = tokens;
+        }
+
+        static Entry of(Task task) {
+            String normalized = normalize(task.getDescription());
+            return new Entry(task, normalized, tokenize(normalized));
+        }
+
+        /**
+         * @return An entry for the new version of the task, keeping the tokens if the
+         * description did not change.
+         */
+        Entry with(Task task) {
+            String normalized = normalize(task.getDescription());
+            return normalized.equals(this.normalized)
+                    ? new Entry(task, this.normalized, tokens)
+                    : new Entry(task, normalized, tokenize(normalized));
+        }
+    }
+
+    /**
+     * A scored task together with its position in the index, used to keep ties stable.
+     */
+    private static final class Candidate {
+        private final int index;
+        private final TaskMatch match;
+
+        Candidate(int index, TaskMatch match) {
+            this.index = index;
+            this.match = match;
+        }
+    }
+}
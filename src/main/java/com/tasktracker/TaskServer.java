@@ -0,0 +1,517 @@
+package com.tasktracker;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * A local server that lets many clients share one {@link TaskManager}.
+ * <p>
+ * Clients connect over TCP on the loopback interface and exchange one JSON object per line.
+ * Each request has an {@code op} field ({@code get}, {@code list}, {@code search}, {@code ready},
+ * {@code add}, {@code update}, {@code mark}, {@code delete} or {@code depend}) and each response
+ * has an {@code ok} field, plus either the result or an {@code error} message.
+ * </p>
+ * <p>
+ * The writer thread keeps the {@link TaskManager}'s dependency graph for the whole run, so the
+ * set of ready tasks is updated incrementally by each write and published with the snapshot
+ * instead of being rebuilt for each {@code ready} request.
+ * </p>
+ * <p>
+ * Each connection is handled on its own thread: a virtual thread when the running JVM
+ * supports them, otherwise a pooled platform thread. Reads are served from an immutable
+ * snapshot of the tasks without locking, so readers never wait for each other or for an index
+ * to be built. Writes are queued to the single writer thread, which applies all queued writes in
+ * one {@link TaskManager#runBatch(Runnable) batch}, writes the file once, publishes a new
+ * snapshot and then answers the clients. A client therefore always reads its own writes.
+ * </p>
+ * <p>
+ * The writer thread keeps a {@link TaskSearchEngine} over its own copies of the tasks. After
+ * each batch it copies and re-indexes only the tasks the batch changed, as reported by the
+ * TaskManager, and publishes a {@link TaskSearchEngine#snapshot() snapshot} of the index, which
+ * shares the copies and index entries of all other tasks with the previous snapshot.
+ * </p>
+ * <p>
+ * The server must be the only writer of the tasks file while it runs.
+ * </p>
+ */
+public class TaskServer implements Closeable {
+
+    static final int DEFAULT_PORT = 7878;
+    private static final int BACKLOG = 1024;
+    private static final int MAX_BATCH_SIZE = 512;
+    private static final int DEFAULT_SEARCH_RESULTS = 5;
+
+    private final TaskManager taskManager;
+    private final ServerSocket serverSocket;
+    private final ExecutorService connections = newConnectionExecutor();
+    private final Set<Socket> clients = ConcurrentHashMap.newKeySet();
+    private final BlockingQueue<Mutation> mutations = new LinkedBlockingQueue<>();
+    private final Thread writer = new Thread(this::writeLoop, "task-server-writer");
+    private final Set<Task> changedTasks = Collections.newSetFromMap(new IdentityHashMap<>());
+    private boolean tasksReplaced;
+    private TaskSearchEngine index;
+    private volatile Snapshot snapshot;
+    private volatile boolean running = true;
+
+    /**
+     * Creates a server for the given TaskManager, listening on the loopback interface.
+     * Result messages of the TaskManager are turned off while it is served.
+     *
+     * @param taskManager The TaskManager to serve. Must not be null.
+     * @param port        The port to listen on, or 0 to pick a free port.
+     * @throws IllegalArgumentException if taskManager is null.
+     * @throws IOException if the server socket cannot be opened.
+     */
+    public TaskServer(TaskManager taskManager, int port) throws IOException {
+        if (taskManager == null) {
+            throw new IllegalArgumentException("TaskManager cannot be null.");
+        }
+        this.taskManager = taskManager;
+        taskManager.setVerbose(false);
+        this.index = new TaskSearchEngine(taskManager.listTasks());
+        this.snapshot = new Snapshot(index.snapshot(), taskManager.listReadyTaskIds());
+        taskManager.setChangeListener(new TaskManager.ChangeListener() {
+            @Override
+            public void tasksChanged(Collection<Task> tasks) {
+                changedTasks.addAll(tasks);
+            }
+
+            @Override
+            public void tasksReplaced() {
+                tasksReplaced = true;
+            }
+        });
+        this.serverSocket = new ServerSocket(port, BACKLOG, InetAddress.getLoopbackAddress());
+    }
+
+    /**
+     * Gets the port the server listens on.
+     *
+     * @return The local port.
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Accepts client connections until the server is closed.
+     *
+     * @throws IOException if accepting a connection fails while the server is running.
+     */
+    public void serve() throws IOException {
+        startWriter();
+        while (running) {
+            Socket client;
+            try {
+                client = serverSocket.accept();
+            } catch (SocketException e) {
+                if (!running) {
+                    return; // Closed by close()
+                }
+                throw e;
+            }
+            clients.add(client);
+            connections.execute(() -> handleConnection(client));
+        }
+    }
+
+    /**
+     * Starts the thread that applies queued writes. Until it runs, writes wait in the queue.
+     */
+    void startWriter() {
+        writer.start();
+    }
+
+    /**
+     * Stops accepting connections, waits for queued writes to finish and closes open connections.
+     * <p>
+     * Clients waiting for a queued write get its real result before their connection is
+     * closed. Writes submitted after the writer has stopped are answered with an error.
+     * </p>
+     */
+    @Override
+    public void close() {
+        running = false;
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            System.err.println("Error closing server socket: " + e.getMessage());
+        }
+        try {
+            if (writer.isAlive()) {
+                writer.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Mutation mutation = mutations.poll(); mutation != null; mutation = mutations.poll()) {
+            mutation.result.complete(error("Server is shutting down."));
+        }
+        for (Socket client : clients) {
+            closeQuietly(client);
+        }
+        connections.shutdown();
+        try {
+            if (!connections.awaitTermination(5, TimeUnit.SECONDS)) {
+                connections.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            connections.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Reads requests from a client and answers each one until the client disconnects.
+     *
+     * @param client The client connection.
+     */
+    private void handleConnection(Socket client) {
+        try (client;
+             BufferedReader in = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8));
+             BufferedWriter out = new BufferedWriter(new OutputStreamWriter(client.getOutputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                out.write(handle(line).toString());
+                out.newLine();
+                out.flush();
+            }
+        } catch (IOException e) {
+            if (running) {
+                System.err.println("Error serving client: " + e.getMessage());
+            }
+        } finally {
+            clients.remove(client);
+        }
+    }
+
+    /**
+     * Handles a single request line.
+     *
+     * @param line The request, as a JSON object.
+     * @return The response.
+     */
+    JSONObject handle(String line) {
+        try {
+            JSONObject request = new JSONObject(line);
+            String op = request.optString("op", "");
+            switch (op) {
+                case "get":
+                    return get(request.getString("id"));
+                case "list":
+                    return list(request.optString("status", null));
+                case "search":
+                    return search(request.getString("keyword"), request.optInt("k", DEFAULT_SEARCH_RESULTS));
+                case "ready":
+                    return ready();
+                case "add":
+                    return add(request.getString("description"), request.optString("status", null),
+                            request.optString("parent", null));
+                case "update":
+                    return update(request.getString("id"), request.optString("description", null), request.optString("status", null));
+                case "mark":
+                    Status status = Status.validateStatus(request.getString("status"));
+                    String markId = request.getString("id");
+                    return submit(manager -> found(manager.markTaskAs(markId, status), markId));
+                case "delete":
+                    String deleteId = request.getString("id");
+                    return submit(manager -> found(manager.deleteTask(deleteId), deleteId));
+                case "depend":
+                    return depend(request.getString("id"), request.getString("on"), request.optBoolean("remove", false));
+                default:
+                    return error("Unknown operation: " + op);
+            }
+        } catch (JSONException | IllegalArgumentException e) {
+            return error(e.getMessage());
+        }
+    }
+
+    private JSONObject get(String id) {
+        Task task = snapshot.find(id);
+        if (task == null) {
+            return error("Task id: " + id + " not found");
+        }
+        return ok().put("task", TaskManager.toJson(task));
+    }
+
+    private JSONObject list(String statusFilter) {
+        Status status = statusFilter == null ? null : Status.validateStatus(statusFilter);
+        JSONArray tasks = new JSONArray();
+        snapshot.tasks.forEach(task -> {
+            if (status == null || task.getStatusValue() == status) {
+                tasks.put(TaskManager.toJson(task));
+            }
+        });
+        return ok().put("tasks", tasks);
+    }
+
+    private JSONObject search(String keyword, int k) {
+        JSONArray tasks = new JSONArray();
+        for (TaskMatch match : snapshot.tasks.search(keyword, k)) {
+            tasks.put(TaskManager.toJson(match.getTask()).put("distance", match.getDistance()));
+        }
+        return ok().put("tasks", tasks);
+    }
+
+    private JSONObject ready() {
+        Snapshot current = snapshot;
+        JSONArray tasks = new JSONArray();
+        for (String id : current.readyIds) {
+            Task task = current.find(id);
+            if (task != null) {
+                tasks.put(TaskManager.toJson(task));
+            }
+        }
+        return ok().put("tasks", tasks);
+    }
+
+    private JSONObject add(String description, String status, String parentId) {
+        Task task = status == null ? new Task(description) : new Task(description, status);
+        task.setParentId(parentId);
+        JSONObject taskJson = TaskManager.toJson(task);
+        return submit(manager -> {
+            manager.addTask(task);
+            return ok().put("task", taskJson);
+        });
+    }
+
+    private JSONObject update(String id, String description, String status) {
+        if (description == null && status == null) {
+            return error("Nothing to update!");
+        }
+        if (status != null) {
+            Status.validateStatus(status);
+        }
+        return submit(manager -> {
+            boolean updated;
+            if (status == null) {
+                updated = manager.updateTaskDescp(id, description);
+            } else if (description == null) {
+                updated = manager.updateTaskStatus(id, status);
+            } else {
+                updated = manager.updateTaskDecpStatus(id, description, status);
+            }
+            return found(updated, id);
+        });
+    }
+
+    private JSONObject depend(String id, String dependsOnId, boolean remove) {
+        if (remove) {
+            return submit(manager -> manager.removeDependency(id, dependsOnId)
+                    ? ok() : error("Task id: " + id + " not found or does not depend on " + dependsOnId));
+        }
+        return submit(manager -> manager.addDependency(id, dependsOnId)
+                ? ok() : error("Task id: " + id + " or " + dependsOnId + " not found, or the dependency already exists"));
+    }
+
+    /**
+     * Queues a write for the writer thread and waits for its result.
+     *
+     * @param operation The write to apply to the TaskManager.
+     * @return The response produced by the write, or an error if it could not be applied.
+     */
+    private JSONObject submit(Function<TaskManager, JSONObject> operation) {
+        if (!running) {
+            return error("Server is shutting down.");
+        }
+        Mutation mutation = new Mutation(operation);
+        mutations.add(mutation);
+        if (!running && mutations.remove(mutation)) {
+            return error("Server is shutting down."); // Closed after the check above; the writer may be gone
+        }
+        try {
+            return mutation.result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return error("Interrupted while waiting for the write to complete.");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            return error(cause.getMessage() != null ? cause.getMessage() : cause.toString());
+        }
+    }
+
+    /**
+     * Applies queued writes in batches until the server is closed and the queue is empty.
+     */
+    private void writeLoop() {
+        List<Mutation> batch = new ArrayList<>(MAX_BATCH_SIZE);
+        while (running || !mutations.isEmpty()) {
+            Mutation first;
+            try {
+                first = mutations.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                continue; // Keep draining until the queue is empty.
+            }
+            if (first == null) {
+                continue;
+            }
+            batch.add(first);
+            mutations.drainTo(batch, MAX_BATCH_SIZE - 1);
+
+            JSONObject[] results = new JSONObject[batch.size()];
+            try {
+                taskManager.runBatch(() -> {
+                    for (int i = 0; i < batch.size(); i++) {
+                        // A failed write must not fail the others: they are written when the batch ends.
+                        try {
+                            results[i] = batch.get(i).operation.apply(taskManager);
+                        } catch (RuntimeException e) {
+                            results[i] = error(e.getMessage());
+                        }
+                    }
+                });
+                publishSnapshot();
+                for (int i = 0; i < batch.size(); i++) {
+                    batch.get(i).result.complete(results[i]);
+                }
+            } catch (Throwable e) {
+                // The file write failed, or an operation threw an Error. Which writes were saved
+                // is unknown, so all of them fail and the snapshot is rebuilt from the file. The
+                // writer keeps running so later writes are still answered.
+                System.err.println("Error applying writes: " + e);
+                tasksReplaced = true;
+                try {
+                    publishSnapshot();
+                } catch (Throwable again) {
+                    System.err.println("Error reloading tasks: " + again);
+                }
+                for (Mutation mutation : batch) {
+                    mutation.result.completeExceptionally(e);
+                }
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * Brings the writer's index up to date with the TaskManager and publishes a snapshot of it.
+     * Only the tasks changed since the last snapshot are copied and re-indexed, unless the
+     * tasks were replaced, e.g. because the file could not be written.
+     */
+    private void publishSnapshot() {
+        if (tasksReplaced) {
+            tasksReplaced = false;
+            changedTasks.clear();
+            index = new TaskSearchEngine(taskManager.listTasks());
+        }
+        for (Task task : changedTasks) {
+            if (task.isDeleted()) {
+                index.remove(task.getId());
+            } else {
+                index.put(new Task(task));
+            }
+        }
+        changedTasks.clear();
+        snapshot = new Snapshot(index.snapshot(), taskManager.listReadyTaskIds());
+    }
+
+    private static JSONObject found(boolean found, String id) {
+        return found ? ok() : error("Task id: " + id + " not found");
+    }
+
+    private static JSONObject ok() {
+        return new JSONObject().put("ok", true);
+    }
+
+    private static JSONObject error(String message) {
+        return new JSONObject().put("ok", false).put("error", String.valueOf(message));
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+            // Closing anyway
+        }
+    }
+
+    /**
+     * Creates the executor that runs one task per client connection.
+     * <p>
+     * Uses a virtual thread per task when the running JVM provides them (Java 21 and later),
+     * and a cached pool of daemon platform threads otherwise. The lookup is reflective so the
+     * project still builds for Java 17.
+     * </p>
+     *
+     * @return The executor.
+     */
+    static ExecutorService newConnectionExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * An immutable view of the tasks, shared by all readers until the next write is applied.
+     * It is complete when it is published, so reads never lock.
+     */
+    private static final class Snapshot {
+        private final TaskSearchEngine tasks;
+        private final List<String> readyIds;
+
+        /**
+         * @param tasks    A read-only snapshot of the writer's index over copies of the tasks.
+         * @param readyIds The IDs of the ready tasks, as returned by
+         *                 {@link TaskManager#listReadyTaskIds()}.
+         */
+        Snapshot(TaskSearchEngine tasks, List<String> readyIds) {
+            this.tasks = tasks;
+            this.readyIds = Collections.unmodifiableList(readyIds);
+        }
+
+        Task find(String id) {
+            return tasks.find(id);
+        }
+    }
+
+    /**
+     * A queued write and the response it completes.
+     */
+    private static final class Mutation {
+        private final Function<TaskManager, JSONObject> operation;
+        private final CompletableFuture<JSONObject> result = new CompletableFuture<>();
+
+        Mutation(Function<TaskManager, JSONObject> operation) {
+            this.operation = operation;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.tasktracker;
+
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Generates load against a running {@link TaskServer} and reports throughput and latency.
+ * <p>
+ * Each simulated client opens its own connection and sends requests one at a time. A
+ * configurable share of the requests are writes (adding tasks and changing the status of
+ * tasks the client added); the rest are reads ({@code get}, {@code search} and
+ * {@code list} by status). Clients are seeded from their index, so runs are repeatable.
+ * </p>
+ */
+public class TaskServerLoadGenerator {
+
+    private static final String[] WORDS = {
+            "review", "deploy", "fix", "write", "update", "report", "meeting", "budget", "release",
+            "docs", "test", "refactor", "groceries", "invoice", "design", "backup", "server", "client"
+    };
+    private static final Status[] STATUSES = Status.values();
+
+    private final int port;
+    private final int clients;
+    private final int requestsPerClient;
+    private final int writePercent;
+
+    /**
+     * Creates a load generator.
+     *
+     * @param port              The port of the server on the loopback interface.
+     * @param clients           The number of concurrent clients. Must be positive.
+     * @param requestsPerClient The number of requests each client sends. Must be positive.
+     * @param writePercent      The percentage of requests that are writes, from 0 to 100.
+     * @throws IllegalArgumentException if any argument is out of range.
+     */
+    public TaskServerLoadGenerator(int port, int clients, int requestsPerClient, int writePercent) {
+        if (clients <= 0 || requestsPerClient <= 0) {
+            throw new IllegalArgumentException("Clients and requests per client must be positive.");
+        }
+        if (writePercent < 0 || writePercent > 100) {
+            throw new IllegalArgumentException("Write percentage must be between 0 and 100.");
+        }
+        this.port = port;
+        this.clients = clients;
+        this.requestsPerClient = requestsPerClient;
+        this.writePercent = writePercent;
+    }
+
+    /**
+     * Runs all clients to completion and prints a summary of throughput and latency percentiles.
+     *
+     * @throws IOException if a client cannot talk to the server.
+     */
+    public void run() throws IOException {
+        ExecutorService executor = TaskServer.newConnectionExecutor();
+        List<Future<long[]>> results = new ArrayList<>(clients);
+        long start = System.nanoTime();
+        for (int i = 0; i < clients; i++) {
+            int client = i;
+            results.add(executor.submit(() -> runClient(client)));
+        }
+        long[] latencies = new long[clients * requestsPerClient];
+        int errors = 0;
+        int offset = 0;
+        try {
+            for (Future<long[]> result : results) {
+                long[] clientLatencies = result.get();
+                for (long latency : clientLatencies) {
+                    if (latency < 0) {
+                        errors++;
+                    }
+                    latencies[offset++] = Math.abs(latency);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for clients.", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Client failed: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        Arrays.sort(latencies);
+        double seconds = elapsed / 1_000_000_000.0;
+        System.out.printf("Clients: %d, requests: %d, writes: %d%%, errors: %d%n",
+                clients, latencies.length, writePercent, errors);
+        System.out.printf("Elapsed: %.2f s, throughput: %.0f req/s%n", seconds, latencies.length / seconds);
+        System.out.printf("Latency p50: %.2f ms, p99: %.2f ms, max: %.2f ms%n",
+                percentile(latencies, 50), percentile(latencies, 99), latencies[latencies.length - 1] / 1_000_000.0);
+    }
+
+    /**
+     * Sends the requests of one client.
+     *
+     * @param client The index of the client, used as its random seed.
+     * @return The latency of each request in nanoseconds, negated for requests that failed.
+     * @throws IOException if the connection fails.
+     */
+    private long[] runClient(int client) throws IOException {
+        Random random = new Random(client);
+        List<String> ownIds = new ArrayList<>();
+        long[] latencies = new long[requestsPerClient];
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             BufferedWriter out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+            for (int i = 0; i < requestsPerClient; i++) {
+                JSONObject request = nextRequest(random, ownIds);
+                long start = System.nanoTime();
+                out.write(request.toString());
+                out.newLine();
+                out.flush();
+                String line = in.readLine();
+                long latency = System.nanoTime() - start;
+                if (line == null) {
+                    throw new IOException("Server closed the connection.");
+                }
+                JSONObject response = new JSONObject(line);
+                boolean ok = response.optBoolean("ok", false);
+                if (ok && "add".equals(request.getString("op"))) {
+                    ownIds.add(response.getJSONObject("task").getString("id"));
+                }
+                latencies[i] = ok ? latency : -latency;
+            }
+        }
+        return latencies;
+    }
+
+    private JSONObject nextRequest(Random random, List<String> ownIds) {
+        if (random.nextInt(100) < writePercent) {
+            if (ownIds.isEmpty() || random.nextBoolean()) {
+                return new JSONObject().put("op", "add").put("description", randomDescription(random));
+            }
+            return new JSONObject().put("op", "mark")
+                    .put("id", ownIds.get(random.nextInt(ownIds.size())))
+                    .put("status", STATUSES[random.nextInt(STATUSES.length)].toString());
+        }
+        int read = random.nextInt(10);
+        if (read < 5 && !ownIds.isEmpty()) {
+            return new JSONObject().put("op", "get").put("id", ownIds.get(random.nextInt(ownIds.size())));
+        }
+        if (read < 9) {
+            return new JSONObject().put("op", "search").put("keyword", WORDS[random.nextInt(WORDS.length)]).put("k", 5);
+        }
+        return new JSONObject().put("op", "list").put("status", STATUSES[random.nextInt(STATUSES.length)].toString());
+    }
+
+    private static String randomDescription(Random random) {
+        int words = 2 + random.nextInt(6);
+        StringBuilder description = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                description.append(' ');
+            }
+            description.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return description.toString();
+    }
+
+    private static double percentile(long[] sorted, int percentile) {
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1_000_000.0;
+    }
+}
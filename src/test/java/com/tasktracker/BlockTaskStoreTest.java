@@ -0,0 +1,55 @@
+package com.tasktracker;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests that {@link BlockTaskStore} keeps the order of the tasks it writes while only
+ * decompressing the blocks of the status being listed.
+ */
+public class BlockTaskStoreTest {
+
+    private static final int BLOCK_SIZE = 1024;
+
+    @Test
+    public void listingOneStatusOnlyDecompressesItsBlocks(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("tasks" + BlockTaskStore.FILE_SUFFIX);
+        SplittableRandom random = new SplittableRandom(5);
+        List<Task> tasks = new ArrayList<>();
+        List<String> done = new ArrayList<>();
+        for (int i = 0; i < 20 * BLOCK_SIZE; i++) {
+            int roll = random.nextInt(100);
+            Task task = new Task(TaskGenerator.description(random), roll < 10 ? "DONE" : roll < 60 ? "IN_PROGRESS" : "TODO");
+            if (roll >= 95) {
+                task.setDeleted(true);
+            } else if (roll < 10) {
+                done.add(task.getId());
+            }
+            tasks.add(task);
+        }
+        BlockTaskStore.write(file, tasks);
+
+        assertEquals(ids(tasks), ids(BlockTaskStore.readAll(file)));
+
+        long before = BlockTaskStore.blocksDecompressed();
+        assertEquals(done, ids(BlockTaskStore.readByStatus(file, Status.DONE)));
+        long decompressed = BlockTaskStore.blocksDecompressed() - before;
+        assertEquals((done.size() + BLOCK_SIZE - 1) / BLOCK_SIZE, decompressed);
+    }
+
+    private static List<String> ids(List<Task> tasks) {
+        List<String> ids = new ArrayList<>();
+        for (Task task : tasks) {
+            ids.add(task.getId());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,77 @@
+package com.tasktracker;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests that the ready set {@link TaskManager} maintains incrementally in its
+ * {@link DependencyGraph} always matches one rebuilt from the stored tasks.
+ */
+public class DependencyGraphTest {
+
+    private static final Status[] STATUSES = Status.values();
+
+    @Test
+    public void incrementalReadySetMatchesRebuiltOne(@TempDir Path dir) {
+        Path file = dir.resolve("tasks.json");
+        TaskManager manager = TaskManagerFixtures.open(file);
+        SplittableRandom random = new SplittableRandom(7);
+        List<String> ids = new ArrayList<>();
+        for (int step = 0; step < 600; step++) {
+            int roll = random.nextInt(100);
+            if (ids.size() < 5 || roll < 20) {
+                Task task = new Task(TaskGenerator.description(random));
+                if (!ids.isEmpty() && random.nextInt(3) == 0) {
+                    task.setParentId(randomId(random, ids));
+                }
+                try {
+                    manager.addTask(task);
+                    ids.add(task.getId());
+                } catch (IllegalArgumentException e) {
+                    // The parent has been deleted
+                }
+            } else if (roll < 50) {
+                try {
+                    manager.addDependency(randomId(random, ids), randomId(random, ids));
+                } catch (IllegalArgumentException e) {
+                    // Same task or a cycle
+                }
+            } else if (roll < 60) {
+                manager.removeDependency(randomId(random, ids), randomId(random, ids));
+            } else if (roll < 85) {
+                manager.markTaskAs(randomId(random, ids), STATUSES[random.nextInt(STATUSES.length)]);
+            } else if (roll < 93) {
+                manager.updateTaskDecpStatus(randomId(random, ids), TaskGenerator.description(random),
+                        STATUSES[random.nextInt(STATUSES.length)].toString());
+            } else if (roll < 98) {
+                manager.deleteTask(randomId(random, ids));
+            } else {
+                manager.undo();
+            }
+
+            Set<String> rebuilt = ids(TaskManagerFixtures.open(file).listReadyTasks());
+            assertEquals(rebuilt, ids(manager.listReadyTasks()), "Ready tasks after step " + step);
+        }
+    }
+
+    private static String randomId(SplittableRandom random, List<String> ids) {
+        return ids.get(random.nextInt(ids.size()));
+    }
+
+    private static Set<String> ids(List<Task> tasks) {
+        Set<String> ids = new TreeSet<>();
+        for (Task task : tasks) {
+            ids.add(task.getId());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,143 @@
+package com.tasktracker;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.SplittableRandom;
+
+/**
+ * Generates synthetic tasks for scale tests.
+ * <p>
+ * Every property of a task is a pure function of the seed and the task's index, so the same
+ * task can be regenerated at any time without keeping it in memory. This lets a reference
+ * model of millions of tasks store only what changed.
+ * </p>
+ * <p>
+ * Descriptions are built from a fixed vocabulary of task words with mixed case, the odd
+ * ticket number and a few non-ASCII words. Most descriptions have 3 to 8 words; about one in
+ * twenty is a long note of 20 to 40 words. Statuses are mixed as roughly 45% {@code TODO},
+ * 15% {@code IN_PROGRESS} and 40% {@code DONE}.
+ * </p>
+ * <p>
+ * IDs are 16 hex characters like the ones {@link Task} generates, but derived from the index
+ * by a bijection, so they are unique and the expected results are never ambiguous. That
+ * production IDs don't collide at the same scale is checked separately, by
+ * {@code TaskScaleTest}.
+ * </p>
+ */
+final class TaskGenerator {
+
+    static final String[] WORDS = {
+            "review", "deploy", "fix", "write", "update", "report", "meeting", "budget", "release",
+            "docs", "test", "refactor", "groceries", "invoice", "design", "backup", "server", "client",
+            "call", "email", "plan", "schedule", "prepare", "send", "book", "clean", "order", "pay",
+            "renew", "cancel", "migrate", "upgrade", "install", "configure", "monitor", "investigate",
+            "outage", "database", "index", "query", "cache", "latency", "dashboard", "alert", "pipeline",
+            "build", "merge", "branch", "ticket", "customer", "vendor", "contract", "proposal", "slides",
+            "presentation", "quarterly", "weekly", "daily", "roadmap", "feedback", "interview", "onboarding",
+            "laptop", "license", "password", "security", "audit", "compliance", "taxes", "insurance",
+            "dentist", "doctor", "gym", "birthday", "gift", "flight", "hotel", "visa", "passport",
+            "car", "garden", "kitchen", "laundry", "rent", "mortgage", "bank", "transfer", "receipt",
+            "the", "for", "with", "and", "before", "after", "team", "project", "new", "old", "urgent"
+    };
+    private static final String[] RARE_WORDS = {"café", "naïve", "résumé", "Zürich", "façade"};
+    private static final Status[] STATUSES = Status.values();
+    private static final long BASE_TIME = LocalDateTime.of(2024, 1, 1, 0, 0).toEpochSecond(ZoneOffset.UTC);
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private final long seed;
+
+    /**
+     * @param seed The seed all generated tasks are derived from.
+     */
+    TaskGenerator(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * @param index The index of the task.
+     * @return The generated task with that index.
+     */
+    Task task(int index) {
+        long createdAt = createdAt(index);
+        return new Task(id(index), description(index), status(index).toString(),
+                Task.formatTime(createdAt), Task.formatTime(createdAt + mix(index, 3) % (30 * 24 * 3600)));
+    }
+
+    /**
+     * @param index The index of the task.
+     * @return The ID of the task, unique for every index.
+     */
+    static String id(int index) {
+        long x = index * GOLDEN_GAMMA; // Odd multiplier and xor-shift are both invertible
+        x ^= x >>> 32;
+        String hex = Long.toHexString(x);
+        return "0000000000000000".substring(hex.length()) + hex;
+    }
+
+    /**
+     * @param index The index of the task.
+     * @return The initial status of the task.
+     */
+    Status status(int index) {
+        int roll = (int) (mix(index, 1) % 100);
+        if (roll < 45) {
+            return STATUSES[0];
+        }
+        return roll < 60 ? STATUSES[1] : STATUSES[2];
+    }
+
+    /**
+     * @param index The index of the task.
+     * @return The initial description of the task.
+     */
+    String description(int index) {
+        return description(new SplittableRandom(mix(index, 2)));
+    }
+
+    /**
+     * @param index The index of the task.
+     * @return The creation time of the task as epoch seconds.
+     */
+    long createdAt(int index) {
+        return BASE_TIME + index * 7L;
+    }
+
+    /**
+     * Generates a description with the same distribution as the initial ones.
+     *
+     * @param random The source of randomness.
+     * @return The description.
+     */
+    static String description(SplittableRandom random) {
+        int words = random.nextInt(20) == 0 ? 20 + random.nextInt(21) : 3 + random.nextInt(6);
+        StringBuilder description = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                description.append(' ');
+            }
+            int roll = random.nextInt(100);
+            if (roll < 2) {
+                description.append(RARE_WORDS[random.nextInt(RARE_WORDS.length)]);
+            } else if (roll < 6) {
+                description.append('#').append(1000 + random.nextInt(9000));
+            } else {
+                String word = WORDS[random.nextInt(WORDS.length)];
+                if (i == 0 || roll < 10) {
+                    word = Character.toUpperCase(word.charAt(0)) + word.substring(1);
+                }
+                description.append(word);
+            }
+        }
+        return description.toString();
+    }
+
+    /**
+     * Derives an independent non-negative value for one property of one task (SplitMix64).
+     */
+    private long mix(int index, int property) {
+        long z = seed + (index * 4L + property) * GOLDEN_GAMMA;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return (z ^ (z >>> 31)) >>> 1;
+    }
+}
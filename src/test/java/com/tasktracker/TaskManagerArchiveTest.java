@@ -0,0 +1,131 @@
+package com.tasktracker;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests the archive tier of {@link TaskManager}: which tasks compaction archives, how
+ * archived tasks are read back and how they are merged with the tasks file.
+ */
+public class TaskManagerArchiveTest {
+
+    private static final long START = LocalDateTime.of(2024, 1, 1, 0, 0).toEpochSecond(ZoneOffset.UTC);
+    private static final Duration ARCHIVE_AFTER = Duration.ofDays(1);
+
+    @Test
+    public void oldDoneTasksAreArchivedAndOnlyReadOnRequest(@TempDir Path dir) {
+        TaskManager manager = TaskManagerFixtures.open(dir.resolve("tasks.json"));
+        try {
+            TaskManagerFixtures.setTime(START);
+            Task rent = add(manager, "Pay rent", Status.DONE);
+            Task passport = add(manager, "Renew passport", Status.TODO);
+            Task invoice = add(manager, "Send invoice", Status.DONE);
+            TaskManagerFixtures.setTime(START + Duration.ofDays(2).getSeconds());
+            Task report = add(manager, "Write report", Status.DONE);
+
+            assertEquals(2, manager.compact(ARCHIVE_AFTER));
+
+            assertEquals(List.of(passport.getId(), report.getId()), ids(manager.listTasks()));
+            assertEquals(List.of(rent.getId(), invoice.getId()), ids(manager.loadArchivedTasks()));
+            assertEquals(List.of(passport.getId(), report.getId(), rent.getId(), invoice.getId()), ids(manager.listTasks(true)));
+            assertEquals("Pay rent", manager.listTasks(true).get(2).getDescription());
+
+            assertEquals(List.of(), ids(matches(manager.searchTasks("rent", 1, false), 0)));
+            assertEquals(List.of(rent.getId()), ids(matches(manager.searchTasks("rent", 1, true), 0)));
+        } finally {
+            Task.setClock(null);
+        }
+    }
+
+    @Test
+    public void laterCompactionAppendsAGzipMember(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("tasks.json");
+        Path archive = dir.resolve("tasks.json.archive.gz");
+        TaskManager manager = TaskManagerFixtures.open(file);
+        try {
+            TaskManagerFixtures.setTime(START);
+            Task rent = add(manager, "Pay rent", Status.DONE);
+            Task passport = add(manager, "Renew passport", Status.TODO);
+            TaskManagerFixtures.setTime(START + Duration.ofDays(2).getSeconds());
+            assertEquals(1, manager.compact(ARCHIVE_AFTER));
+            byte[] firstMember = Files.readAllBytes(archive);
+
+            manager.markTaskAs(passport.getId(), Status.DONE);
+            TaskManagerFixtures.setTime(START + Duration.ofDays(4).getSeconds());
+            assertEquals(1, manager.compact(ARCHIVE_AFTER));
+
+            byte[] both = Files.readAllBytes(archive);
+            assertTrue(both.length > firstMember.length);
+            assertArrayEquals(firstMember, Arrays.copyOf(both, firstMember.length));
+            assertEquals(List.of(rent.getId(), passport.getId()), ids(TaskManagerFixtures.open(file).loadArchivedTasks()));
+            assertEquals(List.of(), manager.listTasks());
+        } finally {
+            Task.setClock(null);
+        }
+    }
+
+    @Test
+    public void tasksFileWinsOverArchiveAfterInterruptedCompaction(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("tasks.json");
+        Path beforeCompaction = dir.resolve("tasks.json.before");
+        TaskManager manager = TaskManagerFixtures.open(file);
+        try {
+            TaskManagerFixtures.setTime(START);
+            Task rent = add(manager, "Pay rent", Status.DONE);
+            TaskManagerFixtures.setTime(START + Duration.ofDays(2).getSeconds());
+            Files.copy(file, beforeCompaction);
+            assertEquals(1, manager.compact(ARCHIVE_AFTER));
+
+            // The archive was appended but the tasks file was never rewritten.
+            Files.move(beforeCompaction, file, StandardCopyOption.REPLACE_EXISTING);
+            TaskManager reopened = TaskManagerFixtures.open(file);
+            reopened.updateTaskDescp(rent.getId(), "Pay the rent");
+
+            List<Task> tasks = reopened.listTasks(true);
+            assertEquals(List.of(rent.getId()), ids(tasks));
+            assertEquals("Pay the rent", tasks.get(0).getDescription());
+            assertEquals("Pay rent", reopened.loadArchivedTasks().get(0).getDescription());
+        } finally {
+            Task.setClock(null);
+        }
+    }
+
+    private static Task add(TaskManager manager, String description, Status status) {
+        Task task = new Task(description, status.toString());
+        manager.addTask(task);
+        return task;
+    }
+
+    private static List<Task> matches(List<TaskMatch> matches, int maxDistance) {
+        List<Task> tasks = new ArrayList<>();
+        for (TaskMatch match : matches) {
+            if (match.getDistance() <= maxDistance) {
+                tasks.add(match.getTask());
+            }
+        }
+        return tasks;
+    }
+
+    private static List<String> ids(List<Task> tasks) {
+        List<String> ids = new ArrayList<>();
+        for (Task task : tasks) {
+            ids.add(task.getId());
+        }
+        return ids;
+    }
+}
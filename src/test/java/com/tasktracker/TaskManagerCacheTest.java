@@ -0,0 +1,56 @@
+package com.tasktracker;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests that the task cache of {@link TaskManager} never hides or overwrites changes made by
+ * another writer, and cannot be changed through the tasks it returns.
+ */
+public class TaskManagerCacheTest {
+
+    @Test
+    public void sameSizeRewriteWithinTimestampTickIsNotMissed(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("tasks.json");
+        TaskManager first = TaskManagerFixtures.open(file);
+        Task task = new Task("Write report");
+        first.addTask(task);
+        assertEquals(Status.TODO, first.findTask(task.getId()).getStatusValue());
+
+        // Another writer flips the status; on a coarse-timestamp volume the time stays the same.
+        FileTime modified = Files.getLastModifiedTime(file);
+        long size = Files.size(file);
+        TaskManager second = TaskManagerFixtures.open(file);
+        second.updateTaskStatus(task.getId(), "DONE");
+        Files.setLastModifiedTime(file, modified);
+        assertEquals(size, Files.size(file));
+
+        assertEquals(Status.DONE, first.findTask(task.getId()).getStatusValue());
+        first.updateTaskDescp(task.getId(), "Write the report");
+        Task reloaded = TaskManagerFixtures.open(file).findTask(task.getId());
+        assertEquals(Status.DONE, reloaded.getStatusValue());
+        assertEquals("Write the report", reloaded.getDescription());
+    }
+
+    @Test
+    public void returnedTasksAreCopies(@TempDir Path dir) {
+        TaskManager manager = TaskManagerFixtures.open(dir.resolve("tasks.json"));
+        Task task = new Task("Pay rent");
+        manager.addTask(task);
+
+        manager.findTask(task.getId()).setStatus("DONE");
+        manager.listTasks().get(0).setDescription("Changed");
+        manager.searchTasks("rent", 1).get(0).getTask().setStatus("IN_PROGRESS");
+
+        Task cached = manager.findTask(task.getId());
+        assertEquals(Status.TODO, cached.getStatusValue());
+        assertEquals("Pay rent", cached.getDescription());
+    }
+}
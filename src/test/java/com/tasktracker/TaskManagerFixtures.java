@@ -0,0 +1,37 @@
+package com.tasktracker;
+
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+/**
+ * Shared set-up for tests that work on a {@link TaskManager}.
+ */
+final class TaskManagerFixtures {
+
+    private TaskManagerFixtures() {
+    }
+
+    /**
+     * Opens a task store without printing result messages.
+     *
+     * @param file The tasks file. Its name decides the layout, as for the CLI.
+     * @return The TaskManager.
+     */
+    static TaskManager open(Path file) {
+        TaskManager manager = new TaskManager(file.toString());
+        manager.setVerbose(false);
+        return manager;
+    }
+
+    /**
+     * Stops the clock of tasks and their history at the given time, until
+     * {@link Task#setClock(Clock) Task.setClock(null)} restores the system clock.
+     *
+     * @param epochSeconds The time, as epoch seconds of the local wall-clock time.
+     */
+    static void setTime(long epochSeconds) {
+        Task.setClock(Clock.fixed(Instant.ofEpochSecond(epochSeconds), ZoneOffset.UTC));
+    }
+}
@@ -0,0 +1,165 @@
+package com.tasktracker;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests the change history of {@link TaskManager}: undo and reading past states.
+ */
+public class TaskManagerHistoryTest {
+
+    private static final long BATCH_SECONDS = 60;
+    private static final Pattern CHECKPOINT_NAME = Pattern.compile("checkpoint-\\d+-(-?\\d+)\\.json\\.gz");
+
+    @Test
+    public void undoMovesPastChangesOfArchivedTasks(@TempDir Path dir) {
+        TaskManager manager = TaskManagerFixtures.open(dir.resolve("tasks.json"));
+        Task kept = new Task("Renew passport");
+        Task archived = new Task("Pay rent");
+        manager.addTask(kept);
+        manager.addTask(archived);
+        manager.updateTaskDescp(archived.getId(), "Pay the rent");
+        manager.markTaskAs(archived.getId(), Status.DONE);
+        assertEquals(1, manager.compact(Duration.ZERO));
+
+        assertTrue(manager.undo());
+        assertNull(manager.findTask(kept.getId()));
+        assertFalse(manager.undo());
+
+        long skipped = manager.getHistory(archived.getId()).stream()
+                .filter(event -> "skipped".equals(event.getField()))
+                .count();
+        assertEquals(3, skipped);
+    }
+
+    @Test
+    public void checkpointsReplayToTheCurrentStateAndAreThinnedOut(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("tasks.json");
+        TaskManager manager = TaskManagerFixtures.open(file);
+        SplittableRandom random = new SplittableRandom(42);
+        List<String> ids = new ArrayList<>();
+        for (int batch = 0; batch < 400; batch++) {
+            applyRandomChanges(manager, random, ids, batch);
+        }
+
+        TaskHistory history = new TaskHistory(dir.resolve("tasks.json.history"));
+        assertEquals(describe(manager.listTasks()), describe(history.tasksAsOf(Long.MAX_VALUE)));
+
+        Set<String> checkpoints = checkpoints(dir);
+        assertTrue(checkpoints.size() > 2);
+        assertTrue(checkpoints.size() < 16, "Checkpoints kept: " + checkpoints.size());
+        assertTrue(checkpoints.stream().anyMatch(name -> name.startsWith("checkpoint-0-")));
+    }
+
+    @Test
+    public void pastStatesAreRebuiltBetweenAndBeforeCheckpoints(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("tasks.json");
+        Task existing = new Task("Renew passport");
+        Files.writeString(file, "[" + TaskManager.toJson(existing) + "]");
+        long start = LocalDateTime.of(2024, 1, 1, 0, 0).toEpochSecond(ZoneOffset.UTC);
+        try {
+            TaskManagerFixtures.setTime(start);
+            TaskManager manager = TaskManagerFixtures.open(file);
+            SplittableRandom random = new SplittableRandom(42);
+            List<String> ids = new ArrayList<>(List.of(existing.getId()));
+            List<Map<String, String>> states = new ArrayList<>();
+            Set<String> written = new TreeSet<>();
+            for (int batch = 0; batch < 400; batch++) {
+                TaskManagerFixtures.setTime(start + (batch + 1) * BATCH_SECONDS);
+                applyRandomChanges(manager, random, ids, batch);
+                states.add(describe(manager.listTasks()));
+                written.addAll(checkpoints(dir));
+            }
+
+            TaskHistory history = new TaskHistory(dir.resolve("tasks.json.history"));
+            assertTrue(history.tasksAsOf(start - 1).isEmpty(), "Before the first checkpoint");
+            assertEquals(describe(List.of(existing)), describe(history.tasksAsOf(start)));
+            for (int batch = 0; batch < states.size(); batch++) {
+                long time = start + (batch + 1) * BATCH_SECONDS;
+                assertEquals(states.get(batch), describe(history.tasksAsOf(time)), "As of batch " + batch);
+                assertEquals(states.get(batch), describe(history.tasksAsOf(time + BATCH_SECONDS / 2)),
+                        "Between batch " + batch + " and the next");
+            }
+
+            Set<String> thinned = new TreeSet<>(written);
+            thinned.removeAll(checkpoints(dir));
+            assertFalse(thinned.isEmpty(), "No checkpoint was thinned out");
+            for (String name : thinned) {
+                Matcher matcher = CHECKPOINT_NAME.matcher(name);
+                assertTrue(matcher.matches(), name);
+                long time = Long.parseLong(matcher.group(1));
+                int batch = (int) ((time - start) / BATCH_SECONDS) - 1;
+                assertEquals(states.get(batch), describe(history.tasksAsOf(time)), "As of thinned " + name);
+            }
+        } finally {
+            Task.setClock(null);
+        }
+    }
+
+    /**
+     * Applies one batch of 50 random adds, updates, status changes and deletes, and undoes the
+     * last change after every 50th batch.
+     */
+    private static void applyRandomChanges(TaskManager manager, SplittableRandom random, List<String> ids, int batch) {
+        manager.runBatch(() -> {
+            for (int i = 0; i < 50; i++) {
+                int roll = random.nextInt(10);
+                if (ids.size() < 20 || roll < 3) {
+                    Task task = new Task(TaskGenerator.description(random));
+                    manager.addTask(task);
+                    ids.add(task.getId());
+                } else {
+                    String id = ids.get(random.nextInt(ids.size()));
+                    if (roll < 6) {
+                        manager.updateTaskDescp(id, TaskGenerator.description(random));
+                    } else if (roll < 9) {
+                        manager.markTaskAs(id, Status.values()[random.nextInt(Status.values().length)]);
+                    } else {
+                        manager.deleteTask(id);
+                    }
+                }
+            }
+        });
+        if (batch % 50 == 49) {
+            manager.undo();
+        }
+    }
+
+    private static Set<String> checkpoints(Path dir) throws IOException {
+        Set<String> names = new TreeSet<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir.resolve("tasks.json.history"), "checkpoint-*.json.gz")) {
+            files.forEach(path -> names.add(path.getFileName().toString()));
+        }
+        return names;
+    }
+
+    private static Map<String, String> describe(List<Task> tasks) {
+        Map<String, String> described = new HashMap<>();
+        for (Task task : tasks) {
+            described.put(task.getId(), task.getStatus() + " " + task.getDescription());
+        }
+        return described;
+    }
+}
@@ -0,0 +1,129 @@
+package com.tasktracker;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * The expected state of a task store filled by a {@link TaskGenerator}.
+ * <p>
+ * Tasks are identified by their generator index, in the order they were added. Only the
+ * changes since generation are stored, so the model of millions of tasks fits in a few
+ * megabytes next to the store under test.
+ * </p>
+ */
+final class TaskReferenceModel {
+
+    private final TaskGenerator generator;
+    private final BitSet deleted = new BitSet();
+    private final Map<Integer, String> descriptions = new HashMap<>();
+    private final Map<Integer, Status> statuses = new HashMap<>();
+    private final int[] statusCounts = new int[Status.values().length];
+    private int size;
+    private int liveCount;
+
+    /**
+     * Creates a model of the first {@code initialSize} generated tasks.
+     *
+     * @param generator   The generator of the tasks.
+     * @param initialSize The number of tasks the store starts with.
+     */
+    TaskReferenceModel(TaskGenerator generator, int initialSize) {
+        this.generator = generator;
+        for (int i = 0; i < initialSize; i++) {
+            add();
+        }
+    }
+
+    /**
+     * @return The number of tasks ever added, including deleted ones.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return The number of tasks that are not deleted.
+     */
+    int liveCount() {
+        return liveCount;
+    }
+
+    /**
+     * @param status A status.
+     * @return The number of tasks that are not deleted and have that status.
+     */
+    int count(Status status) {
+        return statusCounts[status.ordinal()];
+    }
+
+    boolean isLive(int index) {
+        return !deleted.get(index);
+    }
+
+    String id(int index) {
+        return TaskGenerator.id(index);
+    }
+
+    String description(int index) {
+        String description = descriptions.get(index);
+        return description != null ? description : generator.description(index);
+    }
+
+    Status status(int index) {
+        Status status = statuses.get(index);
+        return status != null ? status : generator.status(index);
+    }
+
+    long createdAt(int index) {
+        return generator.createdAt(index);
+    }
+
+    /**
+     * Adds the next generated task.
+     *
+     * @return The index of the added task.
+     */
+    int add() {
+        int index = size++;
+        liveCount++;
+        statusCounts[generator.status(index).ordinal()]++;
+        return index;
+    }
+
+    void updateDescription(int index, String description) {
+        descriptions.put(index, description);
+    }
+
+    void updateStatus(int index, Status status) {
+        statusCounts[status(index).ordinal()]--;
+        statusCounts[status.ordinal()]++;
+        statuses.put(index, status);
+    }
+
+    void delete(int index) {
+        statusCounts[status(index).ordinal()]--;
+        liveCount--;
+        deleted.set(index);
+    }
+
+    /**
+     * Picks a task that is not deleted.
+     *
+     * @param random The source of randomness.
+     * @return The index of the task.
+     * @throws IllegalStateException if all tasks are deleted.
+     */
+    int randomLiveIndex(SplittableRandom random) {
+        if (liveCount == 0) {
+            throw new IllegalStateException("No live tasks.");
+        }
+        while (true) {
+            int index = random.nextInt(size);
+            if (isLive(index)) {
+                return index;
+            }
+        }
+    }
+}
@@ -0,0 +1,397 @@
+package com.tasktracker;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import org.apache.commons.text.similarity.LevenshteinDistance;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+/**
+ * Runs CRUD, list and search workloads against stores of synthetic tasks and checks every
+ * result against a {@link TaskReferenceModel}.
+ * <p>
+ * Each run seeds a store with {@link TaskGenerator generated} tasks, opens it, applies a
+ * deterministic mix of adds, updates, deletes and lookups in batches, then reopens it and
+ * compares the full listing, the listing per status and the top search matches with the
+ * model. Search results are checked against an independent implementation of the scoring
+ * rules built on {@link LevenshteinDistance}.
+ * </p>
+ * <p>
+ * The time, peak heap and retained heap of each phase are appended to
+ * {@code target/scale-report.csv}. The peak heap is the sum of the peaks of the heap memory
+ * pools, so it is an upper bound. The retained heap is the growth of the live heap over the
+ * phase while its result is still reachable; for the {@code reopen} phase, whose result is a
+ * {@link TaskManager} holding the cached tasks, it is the in-memory size of the store.
+ * </p>
+ * <p>
+ * The sizes come from the {@code tasktracker.scale.sizes} system property and default to
+ * 10,000 tasks. {@code mvn test -Pscale} runs 10K, 1M and 10M tasks with a larger heap. The
+ * JSON layout reads its file as a single string, so it only runs up to
+ * {@code tasktracker.scale.jsonLimit} tasks (1M by default); larger sizes use the block
+ * layout only. Above {@code tasktracker.scale.oracleLimit} tasks (1M by default) the search
+ * check only re-scores the returned matches instead of ranking every task.
+ * </p>
+ */
+public class TaskScaleTest {
+
+    private static final long SEED = 20240101L;
+    private static final int OPERATIONS = Integer.getInteger("tasktracker.scale.operations", 1000);
+    private static final int BATCH_SIZE = 100;
+    private static final int JSON_LIMIT = Integer.getInteger("tasktracker.scale.jsonLimit", 1_000_000);
+    private static final int ORACLE_LIMIT = Integer.getInteger("tasktracker.scale.oracleLimit", 1_000_000);
+    private static final Path REPORT = Paths.get(System.getProperty("tasktracker.scale.report", "target/scale-report.csv"));
+    private static final int K = 10;
+    private static final String[] QUERIES = {"invoice", "dashbord", "quarterly report", "Zurich", "xylophone"};
+    private static final Status[] STATUSES = Status.values();
+    private static final Pattern TOKEN = Pattern.compile("[\\p{L}\\p{Nd}]+");
+    private static final LevenshteinDistance LEVENSHTEIN = LevenshteinDistance.getDefaultInstance();
+
+    /**
+     * A phase of a run whose time and peak heap are recorded.
+     */
+    private interface Phase<T> {
+        T run() throws IOException;
+    }
+
+    static Stream<Arguments> runs() {
+        List<Arguments> runs = new ArrayList<>();
+        for (String size : System.getProperty("tasktracker.scale.sizes", "10000").split(",")) {
+            int tasks = Integer.parseInt(size.trim());
+            if (tasks <= JSON_LIMIT) {
+                runs.add(Arguments.of(tasks, ".json"));
+            }
+            runs.add(Arguments.of(tasks, BlockTaskStore.FILE_SUFFIX));
+        }
+        return runs.stream();
+    }
+
+    @ParameterizedTest(name = "{0} tasks, {1}")
+    @MethodSource("runs")
+    public void workloadsMatchReferenceModel(int size, String suffix, @TempDir Path dir) throws IOException {
+        Path file = dir.resolve("tasks" + suffix);
+        TaskGenerator generator = new TaskGenerator(SEED);
+        TaskReferenceModel model = new TaskReferenceModel(generator, size);
+
+        measure(size, suffix, "seed", size, () -> seed(file, generator, size));
+        TaskManager manager = measure(size, suffix, "open", size, () -> TaskManagerFixtures.open(file));
+        measure(size, suffix, "crud", OPERATIONS, () -> runCrud(manager, generator, model));
+
+        TaskManager reopened = measure(size, suffix, "reopen", model.liveCount(), () -> {
+            TaskManager fresh = TaskManagerFixtures.open(file);
+            assertTasks(model, fresh.listTasks());
+            return fresh;
+        });
+        measure(size, suffix, "list-by-status", model.liveCount(), () -> {
+            TaskManager cold = TaskManagerFixtures.open(file);
+            for (Status status : STATUSES) {
+                assertTasks(model, status, cold.listTasks(status));
+            }
+            return null;
+        });
+        measure(size, suffix, "search", QUERIES.length, () -> {
+            for (String query : QUERIES) {
+                assertSearch(model, query, reopened.searchTasks(query, K));
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Checks that the IDs {@link Task} generates for new tasks stay unique at the sizes of the
+     * runs, since the runs themselves use {@link TaskGenerator#id(int) generated} IDs.
+     */
+    @ParameterizedTest(name = "{0} tasks")
+    @MethodSource("sizes")
+    public void generatedIdsDoNotCollide(int size) {
+        long[] ids = new long[size];
+        for (int i = 0; i < size; i++) {
+            ids[i] = Task.generateID();
+        }
+        Arrays.sort(ids);
+        for (int i = 1; i < size; i++) {
+            assertTrue(ids[i] != ids[i - 1], "Duplicate task ID among " + size + " generated ones");
+        }
+    }
+
+    static Stream<Arguments> sizes() {
+        List<Arguments> sizes = new ArrayList<>();
+        for (String size : System.getProperty("tasktracker.scale.sizes", "10000").split(",")) {
+            sizes.add(Arguments.of(Integer.parseInt(size.trim())));
+        }
+        return sizes.stream();
+    }
+
+    /**
+     * Writes the first {@code size} generated tasks directly in the store's layout, so
+     * seeding does not go through one file rewrite per task.
+     */
+    private static Void seed(Path file, TaskGenerator generator, int size) throws IOException {
+        if (BlockTaskStore.isBlockFile(file)) {
+            List<Task> tasks = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                tasks.add(generator.task(i));
+            }
+            BlockTaskStore.write(file, tasks);
+            return null;
+        }
+        try (BufferedWriter out = new BufferedWriter(new FileWriter(file.toFile(), StandardCharsets.UTF_8))) {
+            out.write('[');
+            for (int i = 0; i < size; i++) {
+                if (i > 0) {
+                    out.write(',');
+                }
+                out.write(TaskManager.toJson(generator.task(i)).toString());
+            }
+            out.write(']');
+        }
+        return null;
+    }
+
+    /**
+     * Applies {@link #OPERATIONS} random operations in batches and mirrors them in the model.
+     */
+    private static Void runCrud(TaskManager manager, TaskGenerator generator, TaskReferenceModel model) {
+        SplittableRandom random = new SplittableRandom(SEED);
+        for (int done = 0; done < OPERATIONS; done += BATCH_SIZE) {
+            int batch = Math.min(BATCH_SIZE, OPERATIONS - done);
+            manager.runBatch(() -> {
+                for (int i = 0; i < batch; i++) {
+                    applyRandomOperation(manager, generator, model, random);
+                }
+            });
+        }
+        String id = model.id(model.randomLiveIndex(random));
+        assertThrows(IllegalArgumentException.class, () -> manager.updateTaskStatus(id, "ARCHIVED"));
+        return null;
+    }
+
+    private static void applyRandomOperation(TaskManager manager, TaskGenerator generator,
+                                             TaskReferenceModel model, SplittableRandom random) {
+        int roll = random.nextInt(100);
+        if (roll < 25) {
+            int index = model.add();
+            manager.addTask(generator.task(index));
+            return;
+        }
+        int index = model.randomLiveIndex(random);
+        String id = model.id(index);
+        if (roll < 45) {
+            String description = TaskGenerator.description(random);
+            assertTrue(manager.updateTaskDescp(id, description));
+            model.updateDescription(index, description);
+        } else if (roll < 70) {
+            Status status = STATUSES[random.nextInt(STATUSES.length)];
+            assertTrue(manager.updateTaskStatus(id, status.toString()));
+            model.updateStatus(index, status);
+        } else if (roll < 80) {
+            String description = TaskGenerator.description(random);
+            Status status = STATUSES[random.nextInt(STATUSES.length)];
+            assertTrue(manager.updateTaskDecpStatus(id, description, status.toString()));
+            model.updateDescription(index, description);
+            model.updateStatus(index, status);
+        } else if (roll < 90) {
+            assertTrue(manager.deleteTask(id));
+            model.delete(index);
+            assertNull(manager.findTask(id));
+            assertFalse(manager.updateTaskStatus(id, Status.DONE.toString()));
+        } else {
+            assertTask(model, index, manager.findTask(id));
+        }
+    }
+
+    private static void assertTask(TaskReferenceModel model, int index, Task task) {
+        assertNotNull(task, "Task not found: " + model.id(index));
+        assertEquals(model.id(index), task.getId());
+        assertEquals(model.description(index), task.getDescription());
+        assertEquals(model.status(index), task.getStatusValue());
+        assertEquals(Task.formatTime(model.createdAt(index)), task.getCreatedAt());
+    }
+
+    /**
+     * Checks that the tasks are exactly the live tasks of the model, in order.
+     */
+    private static void assertTasks(TaskReferenceModel model, List<Task> tasks) {
+        assertEquals(model.liveCount(), tasks.size());
+        int position = 0;
+        for (int index = 0; index < model.size(); index++) {
+            if (model.isLive(index)) {
+                assertTask(model, index, tasks.get(position++));
+            }
+        }
+    }
+
+    /**
+     * Checks that the tasks are exactly the live tasks of the model with the given status, in order.
+     */
+    private static void assertTasks(TaskReferenceModel model, Status status, List<Task> tasks) {
+        assertEquals(model.count(status), tasks.size());
+        int position = 0;
+        for (int index = 0; index < model.size(); index++) {
+            if (model.isLive(index) && model.status(index) == status) {
+                assertTask(model, index, tasks.get(position++));
+            }
+        }
+    }
+
+    /**
+     * Checks the matches against the best {@link #K} tasks of the model by {@link #score}, with
+     * ties kept in store order. Above the oracle limit, only the returned matches are re-scored.
+     */
+    private static void assertSearch(TaskReferenceModel model, String query, List<TaskMatch> matches) {
+        assertEquals(Math.min(K, model.liveCount()), matches.size(), "Matches for: " + query);
+        for (int i = 0; i < matches.size(); i++) {
+            TaskMatch match = matches.get(i);
+            assertEquals(score(match.getTask().getDescription(), query), match.getDistance(), "Score for: " + query);
+            if (i > 0) {
+                assertTrue(matches.get(i - 1).getDistance() <= match.getDistance(), "Ranking for: " + query);
+            }
+        }
+        if (model.size() > ORACLE_LIMIT) {
+            return;
+        }
+
+        List<Integer> bestIndices = new ArrayList<>(K + 1);
+        List<Integer> bestScores = new ArrayList<>(K + 1);
+        for (int index = 0; index < model.size(); index++) {
+            if (!model.isLive(index)) {
+                continue;
+            }
+            int score = score(model.description(index), query);
+            if (bestScores.size() == K && score >= bestScores.get(K - 1)) {
+                continue;
+            }
+            int position = bestScores.size();
+            while (position > 0 && bestScores.get(position - 1) > score) {
+                position--;
+            }
+            bestScores.add(position, score);
+            bestIndices.add(position, index);
+            if (bestScores.size() > K) {
+                bestScores.remove(K);
+                bestIndices.remove(K);
+            }
+        }
+        List<String> expected = new ArrayList<>();
+        for (int index : bestIndices) {
+            expected.add(model.id(index));
+        }
+        List<String> actual = new ArrayList<>();
+        for (TaskMatch match : matches) {
+            actual.add(match.getTask().getId());
+        }
+        assertEquals(expected, actual, "Matches for: " + query);
+    }
+
+    /**
+     * Scores a description the way {@link TaskSearchEngine} is documented to: 0 if it contains
+     * the keyword, otherwise the sum over the keyword tokens of the smallest edit distance to a
+     * description token, at most the length of the keyword token.
+     */
+    private static int score(String description, String keyword) {
+        String text = description.toLowerCase(Locale.ROOT);
+        String query = keyword.trim().toLowerCase(Locale.ROOT);
+        if (text.contains(query)) {
+            return 0;
+        }
+        List<String> textTokens = tokens(text);
+        List<String> queryTokens = tokens(query);
+        if (queryTokens.isEmpty()) {
+            queryTokens = List.of(query);
+        }
+        int total = 0;
+        for (String queryToken : queryTokens) {
+            int best = queryToken.length();
+            for (String textToken : textTokens) {
+                best = Math.min(best, LEVENSHTEIN.apply(queryToken, textToken));
+            }
+            total += best;
+        }
+        return total;
+    }
+
+    private static List<String> tokens(String text) {
+        List<String> tokens = new ArrayList<>();
+        Matcher matcher = TOKEN.matcher(text);
+        while (matcher.find()) {
+            tokens.add(matcher.group());
+        }
+        return tokens;
+    }
+
+    /**
+     * Runs a phase and appends its time, peak heap and retained heap to the report.
+     *
+     * @param size       The number of tasks the run was seeded with.
+     * @param suffix     The suffix of the tasks file, which selects the layout.
+     * @param name       The name of the phase.
+     * @param operations The number of tasks or operations the phase processed.
+     * @param phase      The phase to run.
+     * @return The result of the phase.
+     */
+    private static <T> T measure(int size, String suffix, String name, int operations, Phase<T> phase) throws IOException {
+        List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+                heapPools.add(pool);
+            }
+        }
+        long baseline = liveHeap();
+        heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+
+        long start = System.nanoTime();
+        T result = phase.run();
+        long millis = (System.nanoTime() - start) / 1_000_000;
+
+        long peakHeap = 0;
+        for (MemoryPoolMXBean pool : heapPools) {
+            peakHeap += pool.getPeakUsage().getUsed();
+        }
+        long retainedHeap = Math.max(0, liveHeap() - baseline);
+        String line = String.format(Locale.ROOT, "%d,%s,%s,%d,%d,%d,%d",
+                size, suffix.substring(1), name, operations, millis, peakHeap / (1024 * 1024), retainedHeap / (1024 * 1024));
+        System.out.println("scale: " + line);
+        if (REPORT.getParent() != null) {
+            Files.createDirectories(REPORT.getParent());
+        }
+        if (!Files.exists(REPORT)) {
+            Files.writeString(REPORT, "tasks,layout,phase,operations,millis,peak_heap_mb,retained_heap_mb\n", StandardCharsets.UTF_8);
+        }
+        Files.writeString(REPORT, line + "\n", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        return result;
+    }
+
+    /**
+     * @return The heap in use after a full collection, in bytes.
+     */
+    private static long liveHeap() {
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,103 @@
+package com.tasktracker;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests that the search index {@link TaskManager} keeps up to date task by task always ranks
+ * like one rebuilt from the stored tasks, that its snapshots don't change with it, and how
+ * descriptions are tokenized.
+ */
+public class TaskSearchEngineTest {
+
+    private static final String[] QUERIES = {"invoice", "dashbord", "quarterly report", "review"};
+    private static final Status[] STATUSES = Status.values();
+
+    @Test
+    public void incrementalIndexMatchesRebuiltOne(@TempDir Path dir) {
+        Path file = dir.resolve("tasks.json");
+        TaskManager manager = TaskManagerFixtures.open(file);
+        SplittableRandom random = new SplittableRandom(11);
+        List<String> ids = new ArrayList<>();
+        for (int step = 0; step < 400; step++) {
+            manager.runBatch(() -> {
+                for (int i = 0; i < 5; i++) {
+                    int roll = random.nextInt(100);
+                    if (ids.size() < 10 || roll < 30) {
+                        Task task = new Task(TaskGenerator.description(random));
+                        manager.addTask(task);
+                        ids.add(task.getId());
+                    } else {
+                        String id = ids.get(random.nextInt(ids.size()));
+                        if (roll < 60) {
+                            manager.updateTaskDescp(id, TaskGenerator.description(random));
+                        } else if (roll < 80) {
+                            manager.markTaskAs(id, STATUSES[random.nextInt(STATUSES.length)]);
+                        } else {
+                            manager.deleteTask(id);
+                        }
+                    }
+                }
+            });
+            if (step % 20 == 19) {
+                manager.undo();
+            }
+
+            String query = QUERIES[random.nextInt(QUERIES.length)];
+            List<String> rebuilt = describe(TaskManagerFixtures.open(file).searchTasks(query, 10));
+            assertEquals(rebuilt, describe(manager.searchTasks(query, 10)), "Matches after step " + step);
+        }
+    }
+
+    @Test
+    public void snapshotIsNotChangedByLaterWrites() {
+        SplittableRandom random = new SplittableRandom(3);
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            tasks.add(new Task(TaskGenerator.description(random)));
+        }
+        TaskSearchEngine engine = new TaskSearchEngine(tasks);
+        TaskSearchEngine snapshot = engine.snapshot();
+        List<String> before = describe(snapshot.search("invoice", 20));
+
+        for (int i = 0; i < 2000; i++) {
+            engine.remove(tasks.get(i).getId()); // Enough to compact the index
+        }
+        Task changed = new Task(tasks.get(2500));
+        changed.setDescription("Send the invoice");
+        engine.put(changed);
+        engine.put(new Task("Pay the invoice"));
+
+        assertEquals(before, describe(snapshot.search("invoice", 20)));
+        assertEquals(3000, snapshot.size());
+        assertEquals(tasks.get(0), snapshot.find(tasks.get(0).getId()));
+        assertEquals(tasks.get(2500).getDescription(), snapshot.find(changed.getId()).getDescription());
+        assertEquals(1001, engine.size());
+        assertEquals("Send the invoice", engine.find(changed.getId()).getDescription());
+        assertNull(engine.find(tasks.get(0).getId()));
+    }
+
+    @Test
+    public void lettersOutsideTheBasicPlaneStayInTheirToken() {
+        // U+1D400 MATHEMATICAL BOLD CAPITAL A is a letter encoded as a surrogate pair.
+        String text = TaskSearchEngine.normalize("x𝐀y z-9");
+        assertArrayEquals(new String[] {"x𝐀y", "z", "9"}, TaskSearchEngine.tokenize(text));
+    }
+
+    private static List<String> describe(List<TaskMatch> matches) {
+        List<String> described = new ArrayList<>();
+        for (TaskMatch match : matches) {
+            described.add(match.getTask().getId() + " " + match.getDistance() + " " + match.getTask().getDescription());
+        }
+        return described;
+    }
+}
@@ -0,0 +1,153 @@
+package com.tasktracker;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests the requests {@link TaskServer} handles, without going through a socket.
+ */
+public class TaskServerTest {
+
+    @Test
+    public void clientsReadTheirOwnWrites(@TempDir Path dir) throws IOException {
+        TaskServer server = new TaskServer(TaskManagerFixtures.open(dir.resolve("tasks.json")), 0);
+        server.startWriter();
+        try {
+            String report = id(handle(server, add("Write quarterly report")));
+            assertEquals("Write quarterly report", handle(server, get(report)).getJSONObject("task").getString("description"));
+            assertEquals(report, ids(handle(server, search("quarterly"))).iterator().next());
+            assertEquals(Set.of(report), ids(handle(server, new JSONObject().put("op", "ready"))));
+
+            String review = id(handle(server, add("Review the report")));
+            assertOk(handle(server, new JSONObject().put("op", "depend").put("id", review).put("on", report)));
+            assertEquals(Set.of(report), ids(handle(server, new JSONObject().put("op", "ready"))));
+
+            assertOk(handle(server, new JSONObject().put("op", "mark").put("id", report).put("status", "DONE")));
+            assertEquals(Set.of(review), ids(handle(server, new JSONObject().put("op", "ready"))));
+            assertEquals(Set.of(report), ids(handle(server, new JSONObject().put("op", "list").put("status", "DONE"))));
+
+            assertOk(handle(server, new JSONObject().put("op", "update").put("id", review).put("description", "Review the final report")));
+            assertEquals("Review the final report", handle(server, get(review)).getJSONObject("task").getString("description"));
+            assertEquals(review, ids(handle(server, search("final"))).iterator().next());
+
+            assertOk(handle(server, new JSONObject().put("op", "delete").put("id", report)));
+            assertFalse(handle(server, get(report)).getBoolean("ok"));
+            assertEquals(Set.of(review), ids(handle(server, new JSONObject().put("op", "list"))));
+        } finally {
+            server.close();
+        }
+    }
+
+    @Test
+    public void failedWriteDoesNotFailTheRestOfItsBatch(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("tasks.json");
+        TaskManager manager = TaskManagerFixtures.open(file);
+        Task existing = new Task("Renew passport");
+        manager.addTask(existing);
+        TaskServer server = new TaskServer(manager, 0);
+        try {
+            List<CompletableFuture<JSONObject>> results = queue(server, List.of(
+                    add("Pay rent"),
+                    new JSONObject().put("op", "depend").put("id", existing.getId()).put("on", existing.getId()),
+                    add("Book flights")));
+            server.startWriter();
+
+            String rent = id(results.get(0).get());
+            assertEquals("A task cannot depend on itself.", results.get(1).get().getString("error"));
+            String flights = id(results.get(2).get());
+            assertOk(handle(server, get(rent)));
+            assertOk(handle(server, get(flights)));
+            assertTrue(TaskManagerFixtures.open(file).findTask(flights) != null);
+        } finally {
+            server.close();
+        }
+    }
+
+    @Test
+    public void closeAppliesQueuedWrites(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("tasks.json");
+        TaskServer server = new TaskServer(TaskManagerFixtures.open(file), 0);
+        List<JSONObject> requests = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            requests.add(add("Task " + i));
+        }
+        List<CompletableFuture<JSONObject>> results = queue(server, requests);
+        server.startWriter();
+        server.close();
+
+        for (CompletableFuture<JSONObject> result : results) {
+            assertOk(result.get());
+        }
+        assertEquals(20, TaskManagerFixtures.open(file).listTasks().size());
+        assertEquals("Server is shutting down.", handle(server, add("Too late")).getString("error"));
+    }
+
+    /**
+     * Sends the requests from one thread each, in order, and returns once all of them are
+     * waiting in the server's write queue.
+     */
+    private static List<CompletableFuture<JSONObject>> queue(TaskServer server, List<JSONObject> requests)
+            throws InterruptedException {
+        List<CompletableFuture<JSONObject>> results = new ArrayList<>();
+        for (JSONObject request : requests) {
+            CompletableFuture<JSONObject> result = new CompletableFuture<>();
+            Thread client = new Thread(() -> result.complete(server.handle(request.toString())));
+            client.setDaemon(true);
+            client.start();
+            while (client.getState() != Thread.State.WAITING) {
+                Thread.sleep(1);
+            }
+            results.add(result);
+        }
+        return results;
+    }
+
+    private static JSONObject handle(TaskServer server, JSONObject request) {
+        return server.handle(request.toString());
+    }
+
+    private static JSONObject add(String description) {
+        return new JSONObject().put("op", "add").put("description", description);
+    }
+
+    private static JSONObject get(String id) {
+        return new JSONObject().put("op", "get").put("id", id);
+    }
+
+    private static JSONObject search(String keyword) {
+        return new JSONObject().put("op", "search").put("keyword", keyword).put("k", 1);
+    }
+
+    private static void assertOk(JSONObject response) {
+        assertTrue(response.getBoolean("ok"), response.toString());
+    }
+
+    private static String id(JSONObject response) {
+        assertOk(response);
+        return response.getJSONObject("task").getString("id");
+    }
+
+    private static Set<String> ids(JSONObject response) {
+        assertOk(response);
+        Set<String> ids = new TreeSet<>();
+        JSONArray tasks = response.getJSONArray("tasks");
+        for (int i = 0; i < tasks.length(); i++) {
+            ids.add(tasks.getJSONObject(i).getString("id"));
+        }
+        return ids;
+    }
+}